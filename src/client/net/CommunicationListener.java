@@ -2,7 +2,8 @@ package client.net;
 import java.net.InetSocketAddress;
 
 /**
- * Recieves communication events
+ * Recieves communication events. All methods are called on the connection's I/O thread, in the
+ * order the events happened, so they must return quickly and must not block.
  */
 public interface CommunicationListener {
     
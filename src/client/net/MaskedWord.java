@@ -0,0 +1,94 @@
+package client.net;
+
+/**
+ * The masked word of the current round, rebuilt locally from the deltas broadcasted by the
+ * server. A delta that does not follow directly after the previous one means that something was
+ * missed, the word must then be resynchronized from a full snapshot.
+ */
+class MaskedWord {
+    enum Result {
+        APPLIED,
+        IGNORED,
+        GAP
+    }
+
+    private char[] letters = new char[0];
+    private int round = -1;
+    private int seq = 0;
+    private boolean awaitingSnapshot = false;
+
+    /**
+     * Starts a new round.
+     *
+     * @param state The masked word, as sent by the server.
+     * @param round The number of the new round.
+     */
+    void reset(String state, int round) {
+        if (round < this.round || (round == this.round && seq > 0)) {
+            return;
+        }
+        resync(state, round, 0);
+    }
+
+    /**
+     * Replaces the current state with a full snapshot from the server.
+     *
+     * @param state The masked word, as sent by the server.
+     * @param round The round the snapshot belongs to.
+     * @param seq   The number of guesses covered by the snapshot.
+     */
+    void resync(String state, int round, int seq) {
+        letters = parseState(state);
+        this.round = round;
+        this.seq = seq;
+        awaitingSnapshot = false;
+    }
+
+    /**
+     * Applies the positions revealed by one guess.
+     *
+     * @param round The round of the guess.
+     * @param seq   The sequence number of the guess within the round.
+     * @param delta Comma separated <code>position letter</code> pairs, or <code>-</code>.
+     * @return <code>APPLIED</code> if the word was updated, <code>GAP</code> if a snapshot must
+     *         be requested and <code>IGNORED</code> if the delta is old or a snapshot is already
+     *         requested.
+     */
+    Result apply(int round, int seq, String delta) {
+        if (awaitingSnapshot || (round == this.round && seq <= this.seq)) {
+            return Result.IGNORED;
+        }
+        if (round != this.round || seq != this.seq + 1) {
+            awaitingSnapshot = true;
+            return Result.GAP;
+        }
+        if (!delta.equals("-")) {
+            for (String revealed : delta.split(",")) {
+                int position = Integer.parseInt(revealed.substring(0, revealed.length() - 1));
+                if (position >= letters.length) {
+                    awaitingSnapshot = true;
+                    return Result.GAP;
+                }
+                letters[position] = revealed.charAt(revealed.length() - 1);
+            }
+        }
+        this.seq = seq;
+        return Result.APPLIED;
+    }
+
+    /**
+     * @return The masked word, in the same format as sent by the server.
+     */
+    @Override
+    public String toString() {
+        StringBuilder state = new StringBuilder(letters.length * 2);
+        for (char letter : letters) {
+            state.append(letter).append(' ');
+        }
+        return state.toString();
+    }
+
+    private char[] parseState(String state) {
+        return state.replace(" ", "").toCharArray();
+    }
+}
@@ -0,0 +1,80 @@
+package client.net;
+
+import common.TraceFile;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the round trip of sampled guesses, from sending a guess until receiving the broadcast
+ * it caused. A sampled guess carries a correlation id, which the server adds to the broadcast and
+ * to its own trace of the guess. Each round trip is written as a line in a trace file.
+ *
+ * The fraction of guesses that are sampled is read from the system property
+ * <code>hangman.trace.sample</code>, default is <code>0</code>. The file is read from
+ * <code>hangman.trace.file</code>, default is <code>client-trace.csv</code>.
+ */
+class RoundTrips {
+    private static final int MAX_PENDING = 1024;
+    private final double sampleRate = readSampleRate();
+    private final String idPrefix = Integer.toHexString(ThreadLocalRandom.current().nextInt());
+    private final AtomicLong nextId = new AtomicLong();
+    private final Map<String, Long> pending = new ConcurrentHashMap<>();
+    private TraceFile file;
+
+    /**
+     * Decides whether a guess that is about to be sent is sampled.
+     *
+     * @return The guess's correlation id, or <code>null</code> if it is not sampled.
+     */
+    String sample() {
+        if (sampleRate <= 0 || ThreadLocalRandom.current().nextDouble() >= sampleRate
+            || !openFile()) {
+            return null;
+        }
+        if (pending.size() >= MAX_PENDING) {
+            pending.clear();
+        }
+        String correlationId = idPrefix + "-" + nextId.incrementAndGet();
+        pending.put(correlationId, System.nanoTime());
+        return correlationId;
+    }
+
+    /**
+     * Called when a broadcast with a correlation id is received. Ids of other clients' guesses are
+     * ignored.
+     */
+    void received(String correlationId) {
+        Long sentAt = pending.remove(correlationId);
+        if (sentAt != null) {
+            long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - sentAt);
+            file.record(correlationId + "," + micros);
+        }
+    }
+
+    private synchronized boolean openFile() {
+        if (file == null) {
+            try {
+                file = TraceFile.open(Paths.get(System.getProperty("hangman.trace.file",
+                                                                   "client-trace.csv")),
+                                      "correlation_id,round_trip_us");
+            } catch (IOException ioe) {
+                System.err.println("Could not open trace file, guesses are not traced.");
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static double readSampleRate() {
+        try {
+            return Double.parseDouble(System.getProperty("hangman.trace.sample", "0"));
+        } catch (NumberFormatException nfe) {
+            return 0;
+        }
+    }
+}
@@ -8,64 +8,120 @@ import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
-import java.util.Queue;
 import java.util.StringJoiner;
-import java.util.concurrent.Executor;
-import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.CopyOnWriteArrayList;
+import common.FrameCompressor;
 import common.MsgType;
 import common.MessageSplitter;
+import common.ReceiveBuffer;
 
 /**
  * Manages all communication with the server. All operations are non-blocking.
+ *
+ * If the connection is lost, a new connection is opened which resumes the session. The server
+ * then sends only the broadcasts this client has missed, which are identified by their sequence
+ * numbers.
  */
 public class ServerConnection implements Runnable {
-    private final ByteBuffer msgFromServer = ByteBuffer.allocateDirect(2018);
-    private final Queue<ByteBuffer> messagesToSend = new ArrayDeque<>();
-    private final MessageSplitter msgSplitter = new MessageSplitter();
-    private final List<CommunicationListener> listeners = new ArrayList<>();
+    private static final int MAX_RECONNECTS = 5;
+    private static final long RECONNECT_DELAY_MILLIS = 500;
+    private static final int RECEIVE_BUDGET = 1024 * 1024;
+    private ReceiveBuffer msgFromServer = new ReceiveBuffer(RECEIVE_BUDGET);
+    private final Deque<ByteBuffer> messagesToSend = new ArrayDeque<>();
+    private MessageSplitter msgSplitter = new MessageSplitter();
+    private MessageSplitter decompressedMsgSplitter = new MessageSplitter();
+    private MaskedWord maskedWord = new MaskedWord();
+    private final List<CommunicationListener> listeners = new CopyOnWriteArrayList<>();
+    private final RoundTrips roundTrips = new RoundTrips();
     private InetSocketAddress serverAddress;
+    private String room;
     private SocketChannel socketChannel;
     private Selector selector;
-    private boolean connected;
+    private volatile boolean connected;
     private volatile boolean timeToSend = false;
-    
+    private String sessionToken;
+    private long lastSeq = 0;
+    private int reconnects = 0;
+
     @Override
     public void run() {
-        try {
-            initConnection();
-            initSelector();
-
-            while(connected || !messagesToSend.isEmpty()){
-                if(timeToSend){
-                    socketChannel.keyFor(selector).interestOps(SelectionKey.OP_WRITE);
-                    timeToSend = false;
-                }
-
-                selector.select();
-                for(SelectionKey key : selector.selectedKeys()){
-                    selector.selectedKeys().remove(key);
-                    if(!key.isValid()){
-                        continue;
-                    }
-                    if(key.isConnectable()){
-                        completeConnection(key);
-                    } else if(key.isReadable()){
-                        recvFromServer(key);
-                    } else if(key.isWritable()){
-                        sendToServer(key);
-                    }
-                }
+        while (true) {
+            try {
+                initConnection();
+                initSelector();
+                processEvents();
+                break;
+            } catch (Exception e) {
+                System.err.println("LOST CONNECTION");
+            }
+            if (!canResume()) {
+                break;
+            }
+            try {
+                closeLostConnection();
+                Thread.sleep(RECONNECT_DELAY_MILLIS * reconnects);
+            } catch (IOException | InterruptedException e) {
+                break;
             }
-        } catch (Exception e) {
-            System.err.println("LOST CONNECTION");
-        } try {
+            if (!connected) {
+                break;
+            }
+        }
+        try {
             doDisconnect();
         } catch(IOException ex){
             System.err.println("COULD NOT DISCONNECT, WILL LEAVE UNGRACEFULLY!");
         }     
     }
 
+    private void processEvents() throws IOException {
+        while(connected || !messagesToSend.isEmpty()){
+            if(timeToSend && socketChannel.isConnected()){
+                socketChannel.keyFor(selector).interestOps(SelectionKey.OP_WRITE);
+                timeToSend = false;
+            }
+
+            selector.select();
+            for(SelectionKey key : selector.selectedKeys()){
+                selector.selectedKeys().remove(key);
+                if(!key.isValid()){
+                    continue;
+                }
+                if(key.isConnectable()){
+                    completeConnection(key);
+                } else if(key.isReadable()){
+                    recvFromServer(key);
+                } else if(key.isWritable()){
+                    sendToServer(key);
+                }
+            }
+        }
+    }
+
+    private boolean canResume() {
+        return connected && sessionToken != null && reconnects++ < MAX_RECONNECTS;
+    }
+
+    /**
+     * Closes the lost connection, and discards everything that was received but not handled. A
+     * message that was partially sent is not resent.
+     */
+    private void closeLostConnection() throws IOException {
+        socketChannel.close();
+        selector.close();
+        msgFromServer = new ReceiveBuffer(RECEIVE_BUDGET);
+        msgSplitter = new MessageSplitter();
+        decompressedMsgSplitter = new MessageSplitter();
+        synchronized (messagesToSend) {
+            ByteBuffer partiallySent = messagesToSend.peek();
+            if (partiallySent != null && partiallySent.position() > 0) {
+                messagesToSend.remove();
+            }
+        }
+    }
+
     /**
      * Creates a new instance and connects to the specified server. Also starts a listener thread
      * receiving broadcast messages from server.
@@ -74,7 +130,21 @@ public class ServerConnection implements Runnable {
      * @param port             Server's port number.
      */
     public void connect(String host, int port){
+       connect(host, port, null);
+    }
+
+    /**
+     * Creates a new instance and connects to the specified room on the specified server.
+     *
+     * @param host             Host name or IP address of server.
+     * @param port             Server's port number.
+     * @param room             The room to join, or <code>null</code> for the server's default
+     *                         room.
+     */
+    public void connect(String host, int port, String room){
+       this.room = room;
        serverAddress = new InetSocketAddress(host, port);
+       connected = true;
        new Thread(this).start();
     }
     
@@ -87,7 +157,6 @@ public class ServerConnection implements Runnable {
         socketChannel = socketChannel.open();
         socketChannel.configureBlocking(false);
         socketChannel.connect(serverAddress);
-        connected = true;
     }
     
     private void completeConnection(SelectionKey key) throws IOException{
@@ -99,6 +168,26 @@ public class ServerConnection implements Runnable {
         }catch(IOException ioe){
             notifyConnectionDone(serverAddress);
         }
+        reconnects = 0;
+        sendHello();
+    }
+
+    /**
+     * Says hello before any other queued message, since messages may have been queued while
+     * reconnecting. The session token and the sequence number of the last received broadcast are
+     * included when resuming.
+     */
+    private void sendHello() {
+        String roomName = room == null ? "-" : room;
+        ByteBuffer hello = sessionToken == null
+            ? encode(MsgType.HELLO.toString(), "deflate", roomName)
+            : encode(MsgType.HELLO.toString(), "deflate", roomName, sessionToken,
+                     Long.toString(lastSeq));
+        synchronized (messagesToSend) {
+            messagesToSend.addFirst(hello);
+        }
+        timeToSend = true;
+        selector.wakeup();
     }
     
     /**
@@ -113,7 +202,10 @@ public class ServerConnection implements Runnable {
     
     private void doDisconnect() throws IOException{
         socketChannel.close();
-        socketChannel.keyFor(selector).cancel();
+        SelectionKey key = socketChannel.keyFor(selector);
+        if (key != null) {
+            key.cancel();
+        }
         notifyDisconnectionDone();
     }
 
@@ -127,21 +219,35 @@ public class ServerConnection implements Runnable {
         sendMsg(MsgType.USER.toString(), username);
     }
 
+    /**
+     * Sends a guess. A sampled guess carries a correlation id, and its round trip is recorded when
+     * the resulting broadcast is received.
+     */
     public void sendGuess(String msg) {
-        sendMsg(MsgType.GUESS.toString(), msg);
+        String correlationId = roundTrips.sample();
+        if (correlationId == null) {
+            sendMsg(MsgType.GUESS.toString(), msg);
+        } else {
+            sendMsg(MsgType.GUESS.toString(), msg, correlationId);
+        }
     }
 
     public void sendMsg(String... parts) {
+        ByteBuffer msg = encode(parts);
+        synchronized (messagesToSend) {
+            messagesToSend.add(msg);
+        }
+        timeToSend = true;
+        selector.wakeup();
+    }
+
+    private ByteBuffer encode(String... parts) {
         StringJoiner joiner = new StringJoiner("##");
         for (String part : parts) {
             joiner.add(part);
         }
         String messageWithLengthHeader = MessageSplitter.prependLengthHeader(joiner.toString());
-        synchronized (messagesToSend) {
-            messagesToSend.add(ByteBuffer.wrap(messageWithLengthHeader.getBytes()));
-        }
-        timeToSend = true;
-        selector.wakeup();
+        return ByteBuffer.wrap(messageWithLengthHeader.getBytes());
     }
     
     private void sendToServer(SelectionKey key) throws IOException {
@@ -159,59 +265,128 @@ public class ServerConnection implements Runnable {
     }
 
     private void recvFromServer(SelectionKey key) throws IOException {
-        msgFromServer.clear();
-        int numOfReadBytes = socketChannel.read(msgFromServer);
-        if (numOfReadBytes == -1) {
-            throw new IOException("LOST CONNECTION");
-        }
-        String recvdString = extractMessageFromBuffer();
+        String recvdString = msgFromServer.receive(socketChannel);
         msgSplitter.appendRecvdString(recvdString);
         while (msgSplitter.hasNext()) {
             String msg = msgSplitter.nextMsg();
-            notifyMsgReceived(MessageSplitter.bodyOf(msg));
+            if (FrameCompressor.isCompressed(msg)) {
+                decompressedMsgSplitter.appendRecvdString(FrameCompressor.decompress(msg));
+                while (decompressedMsgSplitter.hasNext()) {
+                    deliver(decompressedMsgSplitter.nextMsg());
+                }
+            } else {
+                deliver(msg);
+            }
+        }
+        if (msgFromServer.isEndOfStream()) {
+            throw new IOException("LOST CONNECTION");
         }
     }
 
-    private String extractMessageFromBuffer() {
-        msgFromServer.flip();
-        byte[] bytes = new byte[msgFromServer.remaining()];
-        msgFromServer.get(bytes);
-        return new String(bytes);
+    /**
+     * Keeps the locally rebuilt masked word up to date. Deltas are turned into complete guess
+     * messages before listeners are notified, a snapshot is requested if a delta is missing.
+     * Sequence numbers are removed, broadcasts that have already been delivered are dropped.
+     */
+    private void deliver(String msg) {
+        String[] envelope = msg.split("##", 3);
+        if (envelope.length == 3) {
+            try {
+                long seq = Long.parseLong(envelope[1]);
+                if (seq > 0 && seq <= lastSeq) {
+                    return;
+                }
+                if (seq > 0) {
+                    lastSeq = seq;
+                }
+                msg = envelope[0] + "##" + envelope[2];
+            } catch (NumberFormatException unsequenced) {
+            }
+        }
+        String[] info = msg.split("##");
+        if (info.length < 2) {
+            notifyMsgReceived(msg);
+            return;
+        }
+        switch (info[1]) {
+            case "NEWGAME":
+                if (info.length > 4) {
+                    maskedWord.reset(info[2], Integer.parseInt(info[4]));
+                }
+                break;
+            case "SNAPSHOT":
+                maskedWord.resync(info[4], Integer.parseInt(info[2]), Integer.parseInt(info[3]));
+                break;
+            case "GUESS":
+                if (info.length > 6) {
+                    roundTrips.received(info[6]);
+                }
+                break;
+            case "DELTA":
+                deliverDelta(info);
+                return;
+            case "HELLO":
+                greeted(info);
+                return;
+        }
+        notifyMsgReceived(msg);
+    }
+
+    /**
+     * Keeps the session token. If the server did not know the session, everything is received
+     * again from the start of the history.
+     */
+    private void greeted(String[] info) {
+        if (info.length < 5) {
+            return;
+        }
+        sessionToken = info[3];
+        if (info[4].equals("new")) {
+            lastSeq = 0;
+            maskedWord = new MaskedWord();
+        }
     }
+
+    private void deliverDelta(String[] info) {
+        if (info.length > 8) {
+            roundTrips.received(info[8]);
+        }
+        int round = Integer.parseInt(info[4]);
+        int seq = Integer.parseInt(info[5]);
+        switch (maskedWord.apply(round, seq, info[6])) {
+            case APPLIED:
+                StringJoiner joiner = new StringJoiner("##");
+                joiner.add(MsgType.BROADCAST.toString());
+                joiner.add(MsgType.GUESS.toString());
+                joiner.add(info[2]);
+                joiner.add(info[3]);
+                joiner.add(maskedWord.toString());
+                joiner.add(info[7]);
+                notifyMsgReceived(joiner.toString());
+                break;
+            case GAP:
+                sendMsg(MsgType.SNAPSHOT.toString());
+                break;
+            default:
+        }
+    }
+
     
     private void notifyConnectionDone(InetSocketAddress connectedAddress) {
-        Executor pool = ForkJoinPool.commonPool();
         for (CommunicationListener listener : listeners) {
-            pool.execute(new Runnable() {
-                @Override
-                public void run() {
-                    listener.connected(connectedAddress);
-                }
-            });
+            listener.connected(connectedAddress);
         }
     }
     
     private void notifyDisconnectionDone() {
-        Executor pool = ForkJoinPool.commonPool();
         for (CommunicationListener listener : listeners) {
-            pool.execute(new Runnable() {
-                @Override
-                public void run() {
-                    listener.disconnected();
-                }
-            });
+            listener.disconnected();
         }
     }
     
     private void notifyMsgReceived(String msg) {
-        Executor pool = ForkJoinPool.commonPool();
         for (CommunicationListener listener : listeners) {
-            pool.execute(new Runnable() {
-                @Override
-                public void run() {
-                    listener.recvdMsg(msg);
-                }
-            });
+            listener.recvdMsg(msg);
         }
     }
     
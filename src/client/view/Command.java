@@ -10,7 +10,7 @@ public enum Command {
     USER,
     /**
      * Establish a connection to the server. The first parameter is IP address (or host name), the
-     * second is port number.
+     * second is port number. The optional third parameter is the room to join.
      */
     CONNECT,
     /**
@@ -0,0 +1,88 @@
+package client.view;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renders events to the console in frames. The first event after an idle period schedules a
+ * frame, and all events arriving until the frame interval has passed are rendered together. When
+ * several events in a frame carry the state of the same round, only the latest state line is
+ * shown. A frame, including the prompt that ends it, is written with a single print. Connection
+ * events end the frame at once, since the client may be about to exit.
+ */
+class ConsoleRenderer {
+    static final long FRAME_MILLIS = 50;
+    private final ThreadSafeStdOut outMgr;
+    private final String prompt;
+    private final ScheduledExecutorService frameTimer =
+        Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread timer = new Thread(task, "console-renderer");
+            timer.setDaemon(true);
+            return timer;
+        });
+    private final Object renderLock = new Object();
+    private List<GameEvent> pending = new ArrayList<>();
+
+    ConsoleRenderer(ThreadSafeStdOut outMgr, String prompt) {
+        this.outMgr = outMgr;
+        this.prompt = prompt;
+    }
+
+    /**
+     * Adds an event to the next frame. May be called from any thread, never blocks on output.
+     */
+    void submit(GameEvent event) {
+        boolean firstInFrame;
+        synchronized (this) {
+            firstInFrame = pending.isEmpty();
+            pending.add(event);
+        }
+        if (event.kind() == GameEvent.Kind.CONNECTION) {
+            renderFrame();
+        } else if (firstInFrame) {
+            frameTimer.schedule(this::renderFrame, FRAME_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void renderFrame() {
+        synchronized (renderLock) {
+            List<GameEvent> events;
+            synchronized (this) {
+                events = pending;
+                pending = new ArrayList<>();
+            }
+            if (!events.isEmpty()) {
+                outMgr.printAndFlush(render(events));
+            }
+        }
+    }
+
+    private String render(List<GameEvent> events) {
+        StringBuilder frame = new StringBuilder();
+        String stateLine = null;
+        for (GameEvent event : events) {
+            if (event.kind().isRoundBoundary() && stateLine != null) {
+                appendStateLine(frame, stateLine);
+                stateLine = null;
+            }
+            if (event.line() != null) {
+                frame.append(event.line()).append(System.lineSeparator());
+            }
+            if (event.stateLine() != null) {
+                stateLine = event.stateLine();
+            }
+        }
+        if (stateLine != null) {
+            appendStateLine(frame, stateLine);
+        }
+        frame.append(prompt);
+        return frame.toString();
+    }
+
+    private void appendStateLine(StringBuilder frame, String stateLine) {
+        frame.append(prompt).append(stateLine).append(System.lineSeparator());
+    }
+}
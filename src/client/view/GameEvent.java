@@ -0,0 +1,107 @@
+package client.view;
+
+/**
+ * Something to show the user, parsed once from a message. An event has at most one line of its
+ * own, and may also carry the current state of the game. The state line of an event is replaced
+ * by the state line of a later event in the same round, if both are rendered in the same frame.
+ */
+class GameEvent {
+    /**
+     * The kinds of events. Events of kinds that start or end a round separate state lines that
+     * must not replace each other.
+     */
+    enum Kind {
+        JOINED, GUESSED, REJECTED, STATE, LEFT, NEW_GAME, END_GAME, CONNECTION;
+
+        boolean isRoundBoundary() {
+            return this == NEW_GAME || this == END_GAME;
+        }
+    }
+
+    private final Kind kind;
+    private final String line;
+    private final String stateLine;
+
+    private GameEvent(Kind kind, String line, String stateLine) {
+        this.kind = kind;
+        this.line = line;
+        this.stateLine = stateLine;
+    }
+
+    /**
+     * Parses a broadcast from the server.
+     *
+     * @param msg The message, <code>BROADCAST##TYPE##...</code>.
+     * @return The event, or <code>null</code> if there is nothing to show.
+     */
+    static GameEvent parse(String msg) {
+        String[] info = msg.split("##");
+        if (info.length < 3) {
+            return null;
+        }
+        try {
+            return parse(info);
+        } catch (ArrayIndexOutOfBoundsException incompleteMsg) {
+            return null;
+        }
+    }
+
+    private static GameEvent parse(String[] info) {
+        switch (info[1]) {
+            case "USER":
+                return new GameEvent(Kind.JOINED, info[2] + " has joined the game.", null);
+            case "GUESS":
+                return new GameEvent(Kind.GUESSED, info[2] + " has guessed: " + info[3],
+                                     stateLine(info[4], info[5]));
+            case "INVALID":
+                return new GameEvent(Kind.REJECTED, info[2] + " is not a word, guess again.",
+                                     null);
+            case "SNAPSHOT":
+                return new GameEvent(Kind.STATE, null, stateLine(info[4], info[5]));
+            case "DISCONNECT":
+                return new GameEvent(Kind.LEFT, info[2] + " has left the game.", null);
+            case "NEWGAME":
+                return new GameEvent(Kind.NEW_GAME, "New game has started: " + info[2]
+                                     + ". You have " + info[3] + " guesses left.", null);
+            case "ENDGAME":
+                if (info[7].equals("lose")) {
+                    return new GameEvent(Kind.END_GAME, "You lost! :D. The right word was "
+                                         + info[8] + ". Total Score: " + info[6], null);
+                }
+                return new GameEvent(Kind.END_GAME, "You won! :'( " + " Total Score: " + info[6],
+                                     null);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Creates an event telling the user that the connection has changed.
+     */
+    static GameEvent connection(String line) {
+        return new GameEvent(Kind.CONNECTION, line, null);
+    }
+
+    private static String stateLine(String state, String remainingGuesses) {
+        return "Current state is: " + state + ". Remaining guesses: " + remainingGuesses;
+    }
+
+    Kind kind() {
+        return kind;
+    }
+
+    /**
+     * @return The event's own line, or <code>null</code> if it only carries the state.
+     */
+    String line() {
+        return line;
+    }
+
+    /**
+     * @return The state of the game after this event, or <code>null</code> if it does not change
+     *         the state.
+     */
+    String stateLine() {
+        return stateLine;
+    }
+}
@@ -17,6 +17,7 @@ public class NonBlockingInterpreter implements Runnable {
     private boolean receivingCmds = false;
     private ServerConnection server;
     private final ThreadSafeStdOut outMgr = new ThreadSafeStdOut();
+    private final ConsoleRenderer renderer = new ConsoleRenderer(outMgr, PROMPT);
 
     /**
      * Starts the interpreter. The interpreter will be waiting for user input when this method
@@ -47,7 +48,8 @@ public class NonBlockingInterpreter implements Runnable {
                     case CONNECT:
                         server.addCommunicationListener(new ConsoleOutput());
                         server.connect(cmdLine.getParameter(0),
-                                      Integer.parseInt(cmdLine.getParameter(1)));
+                                      Integer.parseInt(cmdLine.getParameter(1)),
+                                      cmdLine.getParameter(2));
                         break;
                     case USER:
                         server.sendUsername(cmdLine.getParameter(0));
@@ -69,47 +71,30 @@ public class NonBlockingInterpreter implements Runnable {
         return console.nextLine();
     }
 
+    /**
+     * Turns messages into events for the renderer. Called on the connection's I/O thread, so
+     * nothing is printed here.
+     */
     private class ConsoleOutput implements CommunicationListener {
         
         
         @Override 
         public void recvdMsg(String msg){
-            printToConsole(msg);
+            GameEvent event = GameEvent.parse(msg);
+            if (event != null) {
+                renderer.submit(event);
+            }
         }
         
         @Override
         public void connected(InetSocketAddress serverAddress){
-            printToConsoleConnect("Connected to " + serverAddress.getHostName() + ":" + serverAddress.getPort());
+            renderer.submit(GameEvent.connection("Connected to " + serverAddress.getHostName()
+                                                 + ":" + serverAddress.getPort()));
         }
         
         @Override
         public void disconnected(){
-            printToConsoleConnect("Disconnected from server.");
-        }
-        
-        private void printToConsole(String msg) {
-            String[] info = msg.split("##");
-
-            if (info[1].compareTo("USER") == 0)
-                outMgr.println(info[2] + " has joined the game.");
-            if(info[1].compareTo("GUESS") == 0)
-                outMgr.println(info[2] + " has guessed: " + info[3] + "\n> Current state is: " + info[4] + ". Remaining guesses: " + info[5]);
-            if(info[1].compareTo("DISCONNECT") == 0)
-                 outMgr.println(info[2] + " has left the game.");
-            if(info[1].compareTo("NEWGAME") == 0)
-                outMgr.println("New game has started: " + info[2] + ". You have " + info[3] + " guesses left.");
-            if(info[1].compareTo("ENDGAME") == 0) {
-                if(info[7].compareTo("lose") == 0) 
-                    outMgr.println("You lost! :D. The right word was " + info[8] + ". Total Score: " + info[6]);
-                else
-                    outMgr.println("You won! :'( " + " Total Score: " + info[6]);
-            }
-            outMgr.print(PROMPT);       
-        }
-        
-        private void printToConsoleConnect(String msg) {
-           outMgr.println(msg);
-           outMgr.print(PROMPT);
+            renderer.submit(GameEvent.connection("Disconnected from server."));
         }
     }
 }
@@ -21,4 +21,15 @@ class ThreadSafeStdOut {
     synchronized void println(String output) {
         System.out.println(output);
     }
+
+    /**
+     * Prints the specified output and flushes <code>System.out</code>, so that output that is
+     * built in one piece is also written in one piece.
+     *
+     * @param output The output to print.
+     */
+    synchronized void printAndFlush(String output) {
+        System.out.print(output);
+        System.out.flush();
+    }
 }
@@ -0,0 +1,78 @@
+package common;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Base64;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses and decompresses messages sent over a connection that has negotiated compression. A
+ * compressed message is an ordinary message of type <code>DEFLATE</code>, whose body is the
+ * deflated bytes of one or more complete messages, including their length headers, encoded in
+ * base 64.
+ */
+public class FrameCompressor {
+    /**
+     * Messages smaller than this number of bytes are not worth compressing.
+     */
+    public static final int THRESHOLD = 512;
+    private static final String COMPRESSED_PREFIX = MsgType.DEFLATE + "##";
+
+    /**
+     * Compresses the specified messages.
+     *
+     * @param msgs One or more complete messages, with length headers.
+     * @return A complete <code>DEFLATE</code> message, with length header.
+     */
+    public static byte[] compress(byte[] msgs) {
+        Deflater deflater = new Deflater();
+        deflater.setInput(msgs);
+        deflater.finish();
+        ByteArrayOutputStream deflated = new ByteArrayOutputStream(msgs.length / 2 + 16);
+        byte[] chunk = new byte[1024];
+        while (!deflater.finished()) {
+            int len = deflater.deflate(chunk);
+            deflated.write(chunk, 0, len);
+        }
+        deflater.end();
+        String body = COMPRESSED_PREFIX + Base64.getEncoder().encodeToString(deflated.toByteArray());
+        return MessageSplitter.prependLengthHeader(body).getBytes();
+    }
+
+    /**
+     * @return <code>true</code> if the specified message body is compressed.
+     */
+    public static boolean isCompressed(String msgBody) {
+        return msgBody.startsWith(COMPRESSED_PREFIX);
+    }
+
+    /**
+     * Decompresses the body of a <code>DEFLATE</code> message.
+     *
+     * @param msgBody The body of a compressed message.
+     * @return The original messages, with length headers.
+     * @throws MessageException If the body could not be decompressed.
+     */
+    public static String decompress(String msgBody) {
+        byte[] deflated = Base64.getDecoder().decode(msgBody.substring(COMPRESSED_PREFIX.length()));
+        Inflater inflater = new Inflater();
+        inflater.setInput(deflated);
+        ByteArrayOutputStream inflated = new ByteArrayOutputStream(deflated.length * 4);
+        byte[] chunk = new byte[1024];
+        try {
+            while (!inflater.finished()) {
+                int len = inflater.inflate(chunk);
+                if (len == 0 && inflater.needsInput()) {
+                    throw new MessageException("Truncated compressed message");
+                }
+                inflated.write(chunk, 0, len);
+            }
+        } catch (DataFormatException dfe) {
+            throw new MessageException("Could not decompress message", dfe);
+        } finally {
+            inflater.end();
+        }
+        return new String(inflated.toByteArray());
+    }
+}
@@ -23,7 +23,12 @@ public class MessageSplitter {
      */
     public synchronized void appendRecvdString(String recvdString) {
         recvdChars.append(recvdString);
-        while(extractMsg());
+        int consumed = 0;
+        int next;
+        while ((next = extractMsg(consumed)) > consumed) {
+            consumed = next;
+        }
+        recvdChars.delete(0, consumed);
     }
 
     /**
@@ -42,6 +47,13 @@ public class MessageSplitter {
         return !messages.isEmpty();
     }
 
+    /**
+     * @return The number of unread complete messages.
+     */
+    public synchronized int pending() {
+        return messages.size();
+    }
+
     /**
      * Prepends a length header to the specified message. This method should be used by senders. The
      * returned message can be handled by instances of this class when the message is received.
@@ -57,41 +69,29 @@ public class MessageSplitter {
     }
 
     /**
-     * Returns the type of the specified message.
-     */
-    public static MsgType typeOf(String msg) {
-        String[] msgParts = msg.split("##");
-        return MsgType.valueOf(msgParts[0].toUpperCase());
-    }
-
-    /**
-     * Returns the body of the specified message.
+     * Extracts the message starting at the specified index. The received characters are not
+     * removed until all complete messages have been extracted, so that a large batch of messages
+     * is not copied once per message.
+     *
+     * @return The index after the extracted message, or <code>from</code> if there is no complete
+     *         message.
      */
-    public static String bodyOf(String msg) {
-
-        return msg;
-    }
-
-    private boolean extractMsg() {
-        String allRecvdChars = recvdChars.toString();
-        String[] splitAtHeader = allRecvdChars.split("###");
-        if (splitAtHeader.length < 2) {
-            return false;
+    private int extractMsg(int from) {
+        int headerEnd = recvdChars.indexOf("###", from);
+        if (headerEnd < 0) {
+            return from;
         }
-        String lengthHeader = splitAtHeader[0];
-        int lengthOfFirstMsg = Integer.parseInt(lengthHeader);
-        if (hasCompleteMsg(lengthOfFirstMsg, splitAtHeader[1])) {
-            String completeMsg = splitAtHeader[1].substring(0, lengthOfFirstMsg);
-            messages.add(completeMsg);
-            recvdChars.delete(0, lengthHeader.length()
-                                 + "###".length() + lengthOfFirstMsg);
-            return true;
+        int lengthOfFirstMsg = Integer.parseInt(recvdChars.substring(from, headerEnd));
+        int msgStart = headerEnd + "###".length();
+        if (!hasCompleteMsg(lengthOfFirstMsg, recvdChars.length() - msgStart)) {
+            return from;
         }
-        return false;
+        messages.add(recvdChars.substring(msgStart, msgStart + lengthOfFirstMsg));
+        return msgStart + lengthOfFirstMsg;
     }
 
-    private boolean hasCompleteMsg(int msgLen, String recvd) {
-        return recvd.length() >= msgLen;
+    private boolean hasCompleteMsg(int msgLen, int recvdLen) {
+        return recvdLen >= msgLen;
     }
 
 }
\ No newline at end of file
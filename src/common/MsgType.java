@@ -7,4 +7,43 @@ public enum MsgType {
     BROADCAST,
     NEWGAME,
     ENDGAME,
+    DELTA,
+    SNAPSHOT,
+    HELLO,
+    DEFLATE,
+    SUBSCRIBE,
+    FORWARD,
+    RELAY,
+    UNICAST,
+    INVALID,
+    ;
+
+    private static final MsgType[] TYPES = values();
+
+    /**
+     * Resolves the type named by part of a message, ignoring case, without creating any objects.
+     *
+     * @param msg   The message.
+     * @param start The index of the first character of the name.
+     * @param end   The index after the last character of the name.
+     * @return The type, or <code>null</code> if there is no type with that name.
+     */
+    public static MsgType resolve(CharSequence msg, int start, int end) {
+        for (MsgType type : TYPES) {
+            String name = type.name();
+            if (name.length() == end - start && matches(name, msg, start)) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    private static boolean matches(String name, CharSequence msg, int start) {
+        for (int i = 0; i < name.length(); i++) {
+            if (Character.toUpperCase(msg.charAt(start + i)) != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
 }
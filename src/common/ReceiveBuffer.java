@@ -0,0 +1,103 @@
+package common;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Receives from a non-blocking channel. Each call reads until the channel has nothing more to
+ * read, or until the read budget is used, so that one busy connection can not starve the others.
+ * Everything read is decoded as one string.
+ *
+ * The buffer adapts to the traffic. It is doubled when a read fills it, up to
+ * <code>MAX_CAPACITY</code>, and halved after a number of calls that used less than a quarter of
+ * it, down to <code>MIN_CAPACITY</code>.
+ *
+ * Only the byte buffer is reused. Each call that receives something still decodes into a new
+ * string, which is what the callers take.
+ */
+public class ReceiveBuffer {
+    public static final int MIN_CAPACITY = 2048;
+    public static final int MAX_CAPACITY = 256 * 1024;
+    private static final int SHRINK_AFTER = 16;
+    private final int budget;
+    private ByteBuffer buffer = ByteBuffer.allocate(MIN_CAPACITY);
+    private int smallReceives = 0;
+    private boolean endOfStream = false;
+    private int lastReceived = 0;
+
+    /**
+     * @param budget The maximum number of bytes read by one call to <code>receive</code>. May be
+     *               exceeded by at most one read.
+     */
+    public ReceiveBuffer(int budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * Reads all that is available, within the budget.
+     *
+     * @param channel The channel, which must be non-blocking.
+     * @return All received bytes, decoded. Empty if nothing was received.
+     * @throws IOException If the read failed.
+     */
+    public String receive(ReadableByteChannel channel) throws IOException {
+        buffer.clear();
+        int received = 0;
+        while (received < budget) {
+            if (!buffer.hasRemaining()) {
+                if (buffer.capacity() >= MAX_CAPACITY) {
+                    break;
+                }
+                grow();
+            }
+            int numOfReadBytes = channel.read(buffer);
+            if (numOfReadBytes == -1) {
+                endOfStream = true;
+                break;
+            }
+            if (numOfReadBytes == 0) {
+                break;
+            }
+            received += numOfReadBytes;
+        }
+        String recvdString = new String(buffer.array(), 0, buffer.position());
+        lastReceived = received;
+        shrinkIfOversized(received);
+        return recvdString;
+    }
+
+    /**
+     * @return <code>true</code> if the other end has closed the connection. Everything received
+     *         before that has already been returned by <code>receive</code>.
+     */
+    public boolean isEndOfStream() {
+        return endOfStream;
+    }
+
+    /**
+     * @return The number of bytes read by the latest call to <code>receive</code>.
+     */
+    public int lastReceived() {
+        return lastReceived;
+    }
+
+    private void grow() {
+        ByteBuffer larger = ByteBuffer.allocate(Math.min(MAX_CAPACITY, buffer.capacity() * 2));
+        buffer.flip();
+        larger.put(buffer);
+        buffer = larger;
+        smallReceives = 0;
+    }
+
+    private void shrinkIfOversized(int received) {
+        if (buffer.capacity() == MIN_CAPACITY || received >= buffer.capacity() / 4) {
+            smallReceives = 0;
+            return;
+        }
+        if (++smallReceives >= SHRINK_AFTER) {
+            buffer = ByteBuffer.allocate(Math.max(MIN_CAPACITY, buffer.capacity() / 2));
+            smallReceives = 0;
+        }
+    }
+}
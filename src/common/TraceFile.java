@@ -0,0 +1,69 @@
+package common;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A file of latency traces, one comma separated line per trace. Lines are written by a background
+ * thread, so recording a trace never blocks. Traces are dropped if the writer falls behind.
+ */
+public class TraceFile {
+    private static final int CAPACITY = 4096;
+    private final BlockingQueue<String> lines = new ArrayBlockingQueue<>(CAPACITY);
+    private final AtomicLong dropped = new AtomicLong();
+    private final PrintStream out;
+
+    private TraceFile(PrintStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Creates the file, replacing any existing file, and starts the writer thread.
+     *
+     * @param path   The file.
+     * @param header The first line, which names the columns.
+     * @throws IOException If the file could not be created.
+     */
+    public static TraceFile open(Path path, String header) throws IOException {
+        PrintStream out = new PrintStream(new BufferedOutputStream(
+            new FileOutputStream(path.toFile())), false);
+        out.println(header);
+        TraceFile traceFile = new TraceFile(out);
+        Thread writer = new Thread(traceFile::writeLines, "trace-writer");
+        writer.setDaemon(true);
+        writer.start();
+        return traceFile;
+    }
+
+    /**
+     * Adds a line to the file, unless too many lines are waiting to be written.
+     */
+    public void record(String line) {
+        if (!lines.offer(line)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    private void writeLines() {
+        try {
+            while (true) {
+                out.println(lines.take());
+                if (lines.isEmpty()) {
+                    long droppedLines = dropped.getAndSet(0);
+                    if (droppedLines > 0) {
+                        out.println("# " + droppedLines + " traces dropped");
+                    }
+                    out.flush();
+                }
+            }
+        } catch (InterruptedException stopped) {
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package server.capture;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * The format of a capture of inbound traffic. A capture starts with a header:
+ * <pre>
+ * int  magic, "HMCP"
+ * byte version
+ * byte 1 if the games were seeded, else 0
+ * long seed, if seeded
+ * </pre>
+ * It is followed by records, one per received message or closed connection:
+ * <pre>
+ * byte    type, FRAME or CLOSED
+ * varlong microseconds since the previous record
+ * varlong connection id
+ * varint  message length in bytes, FRAME only
+ * bytes   message, without length header, FRAME only
+ * </pre>
+ * Variable length numbers use seven bits per byte, least significant first, with the high bit set
+ * on all bytes but the last.
+ */
+final class CaptureFile {
+    static final int MAGIC = 0x484D4350;
+    static final byte VERSION = 1;
+    static final byte FRAME = 0;
+    static final byte CLOSED = 1;
+
+    private CaptureFile() {
+    }
+
+    static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Invalid number in capture");
+    }
+}
@@ -0,0 +1,87 @@
+package server.capture;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * Reads a capture file, one record at a time. See <code>CaptureFile</code> for the format.
+ */
+class CaptureReader implements Closeable {
+    private final DataInputStream in;
+    private final Long seed;
+    private long micros = 0;
+
+    /**
+     * Opens the capture and reads its header.
+     *
+     * @throws IOException If the file could not be read, or is not a capture.
+     */
+    CaptureReader(Path path) throws IOException {
+        in = new DataInputStream(new BufferedInputStream(new FileInputStream(path.toFile())));
+        if (in.readInt() != CaptureFile.MAGIC || in.readByte() != CaptureFile.VERSION) {
+            in.close();
+            throw new IOException(path + " is not a capture");
+        }
+        seed = in.readByte() == 0 ? null : in.readLong();
+    }
+
+    /**
+     * @return The seed of the word selection when the capture was recorded, or <code>null</code>
+     *         if it was not seeded.
+     */
+    Long seed() {
+        return seed;
+    }
+
+    /**
+     * @return The next record, or <code>null</code> at the end of the capture.
+     * @throws IOException If the capture could not be read.
+     */
+    Record next() throws IOException {
+        int type = in.read();
+        if (type == -1) {
+            return null;
+        }
+        try {
+            micros += CaptureFile.readVarLong(in);
+            long connectionId = CaptureFile.readVarLong(in);
+            String msg = null;
+            if (type == CaptureFile.FRAME) {
+                byte[] bytes = new byte[(int) CaptureFile.readVarLong(in)];
+                in.readFully(bytes);
+                msg = new String(bytes, StandardCharsets.UTF_8);
+            } else if (type != CaptureFile.CLOSED) {
+                throw new IOException("Invalid record type " + type);
+            }
+            return new Record(micros, connectionId, msg);
+        } catch (EOFException truncated) {
+            return null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * A received message, or a closed connection if <code>msg</code> is <code>null</code>.
+     */
+    static class Record {
+        final long micros;
+        final long connectionId;
+        final String msg;
+
+        private Record(long micros, long connectionId, String msg) {
+            this.micros = micros;
+            this.connectionId = connectionId;
+            this.msg = msg;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package server.capture;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import server.log.Log;
+
+/**
+ * Records all inbound messages to a capture file, see <code>CaptureFile</code> for the format.
+ * The I/O thread only queues the records, they are encoded and written by a background thread.
+ * Unlike log entries, records are never dropped, since a capture with holes can not be replayed.
+ */
+public class CaptureWriter {
+    private final BlockingQueue<Record> records = new LinkedBlockingQueue<>();
+    private final DataOutputStream out;
+    private final long startedAt = System.nanoTime();
+    private long previousMicros = 0;
+
+    private CaptureWriter(DataOutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Creates the capture file, replacing any existing file, and starts the writer thread. The
+     * remaining records are written when the JVM exits.
+     *
+     * @param path The file.
+     * @param seed The seed of the word selection, or <code>null</code> if it is not seeded.
+     * @throws IOException If the file could not be created.
+     */
+    public static CaptureWriter open(Path path, Long seed) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+            new FileOutputStream(path.toFile())));
+        out.writeInt(CaptureFile.MAGIC);
+        out.writeByte(CaptureFile.VERSION);
+        out.writeByte(seed == null ? 0 : 1);
+        if (seed != null) {
+            out.writeLong(seed);
+        }
+        CaptureWriter capture = new CaptureWriter(out);
+        Thread writer = new Thread(capture::writeRecords, "capture-writer");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(capture::drain));
+        return capture;
+    }
+
+    /**
+     * Records a received message.
+     *
+     * @param connectionId The id of the connection it was received on.
+     * @param msg          The message, without length header.
+     * @param receivedAt   When it was read, from <code>System.nanoTime</code>.
+     */
+    public void frame(long connectionId, String msg, long receivedAt) {
+        records.add(new Record(CaptureFile.FRAME, connectionId, msg, receivedAt));
+    }
+
+    /**
+     * Records that a connection was closed without the client saying so.
+     */
+    public void closed(long connectionId) {
+        records.add(new Record(CaptureFile.CLOSED, connectionId, null, System.nanoTime()));
+    }
+
+    private void writeRecords() {
+        try {
+            while (true) {
+                Record record = records.take();
+                synchronized (out) {
+                    write(record);
+                    if (records.isEmpty()) {
+                        out.flush();
+                    }
+                }
+            }
+        } catch (InterruptedException stopped) {
+            drain();
+        } catch (IOException ioe) {
+            Log.error("Could not write capture, recording stopped", ioe);
+        }
+    }
+
+    private void drain() {
+        synchronized (out) {
+            try {
+                Record record;
+                while ((record = records.poll()) != null) {
+                    write(record);
+                }
+                out.flush();
+            } catch (IOException ioe) {
+                Log.error("Could not write capture", ioe);
+            }
+        }
+    }
+
+    private void write(Record record) throws IOException {
+        long micros = Math.max(previousMicros,
+                               TimeUnit.NANOSECONDS.toMicros(record.at - startedAt));
+        out.writeByte(record.type);
+        CaptureFile.writeVarLong(out, micros - previousMicros);
+        CaptureFile.writeVarLong(out, record.connectionId);
+        if (record.type == CaptureFile.FRAME) {
+            byte[] bytes = record.msg.getBytes(StandardCharsets.UTF_8);
+            CaptureFile.writeVarLong(out, bytes.length);
+            out.write(bytes);
+        }
+        previousMicros = micros;
+    }
+
+    private static class Record {
+        private final byte type;
+        private final long connectionId;
+        private final String msg;
+        private final long at;
+
+        private Record(byte type, long connectionId, String msg, long at) {
+            this.type = type;
+            this.connectionId = connectionId;
+            this.msg = msg;
+            this.at = at;
+        }
+    }
+}
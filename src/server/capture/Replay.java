@@ -0,0 +1,290 @@
+package server.capture;
+
+import common.FrameCompressor;
+import common.MessageException;
+import common.MessageSplitter;
+import common.ReceiveBuffer;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays a capture against a running server, with one connection per captured connection. The
+ * messages are sent either with their original timing, or as fast as possible. The server should
+ * be fresh and started with the seed the capture was recorded with, so that the same games are
+ * played.
+ *
+ * Each replayed guess gets a correlation id, unless it already has one. Its latency is measured
+ * until the broadcast it caused is received on the same connection. When everything has been
+ * replayed, the throughput and the latency percentiles are reported. When replaying as fast as
+ * possible, disconnects are held back until the guesses have been answered, since the server
+ * would otherwise close the connections before broadcasting.
+ *
+ * Usage: <code>Replay &lt;capture&gt; [-host host] [-port port] [-fast]</code>
+ */
+public class Replay {
+    private static final long IDLE_MILLIS = 2000;
+    private final CaptureReader capture;
+    private final InetSocketAddress serverAddress;
+    private final boolean fast;
+    private final Selector selector;
+    private final Map<Long, Connection> connections = new HashMap<>();
+    private final List<Long> latencies = new ArrayList<>();
+    private final List<CaptureReader.Record> disconnects = new ArrayList<>();
+    private long nextCorrelationId = 0;
+    private int connectionCount = 0;
+    private long msgsSent = 0;
+    private long msgsReceived = 0;
+    private long bytesReceived = 0;
+    private long lastReceivedAt = System.nanoTime();
+
+    private Replay(CaptureReader capture, InetSocketAddress serverAddress, boolean fast)
+        throws IOException {
+        this.capture = capture;
+        this.serverAddress = serverAddress;
+        this.fast = fast;
+        this.selector = Selector.open();
+    }
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.err.println("Usage: Replay <capture> [-host host] [-port port] [-fast]");
+            return;
+        }
+        String host = "localhost";
+        int port = 8080;
+        boolean fast = false;
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "-host":
+                    host = args[++i];
+                    break;
+                case "-port":
+                    port = Integer.parseInt(args[++i]);
+                    break;
+                case "-fast":
+                    fast = true;
+                    break;
+                default:
+                    System.err.println("Unknown option " + args[i]);
+            }
+        }
+        try (CaptureReader capture = new CaptureReader(Paths.get(args[0]))) {
+            if (capture.seed() == null) {
+                System.out.println("The capture was not seeded, replayed games will differ.");
+            } else {
+                System.out.println("The capture was recorded with -Dhangman.seed="
+                                   + capture.seed());
+            }
+            new Replay(capture, new InetSocketAddress(host, port), fast).replay();
+        } catch (IOException ioe) {
+            System.err.println("Replay failed: " + ioe.getMessage());
+        }
+    }
+
+    private void replay() throws IOException {
+        long startedAt = System.nanoTime();
+        CaptureReader.Record record;
+        while ((record = capture.next()) != null) {
+            if (fast) {
+                receive(0);
+            } else {
+                receiveUntil(startedAt + TimeUnit.MICROSECONDS.toNanos(record.micros));
+            }
+            if (fast && isDisconnect(record)) {
+                disconnects.add(record);
+            } else {
+                replay(record);
+            }
+        }
+        long sentAt = System.nanoTime();
+        while (hasUnanswered()
+               && System.nanoTime() - lastReceivedAt < TimeUnit.MILLISECONDS.toNanos(IDLE_MILLIS)) {
+            receive(IDLE_MILLIS);
+        }
+        for (CaptureReader.Record disconnect : disconnects) {
+            replay(disconnect);
+        }
+        report(sentAt - startedAt);
+        for (Connection connection : connections.values()) {
+            close(connection);
+        }
+    }
+
+    private void replay(CaptureReader.Record record) throws IOException {
+        if (record.msg == null) {
+            close(connections.get(record.connectionId));
+        } else {
+            send(record.connectionId, record.msg);
+        }
+    }
+
+    private boolean isDisconnect(CaptureReader.Record record) {
+        return record.msg == null || record.msg.toUpperCase().startsWith("DISCONNECT");
+    }
+
+    private void send(long connectionId, String msg) throws IOException {
+        Connection connection = connections.get(connectionId);
+        if (connection == null) {
+            connection = connect();
+            connections.put(connectionId, connection);
+        }
+        String[] parts = msg.split("##");
+        if (parts[0].equalsIgnoreCase("GUESS") && parts.length >= 2) {
+            String correlationId;
+            if (parts.length > 2) {
+                correlationId = parts[2];
+            } else {
+                correlationId = "replay-" + ++nextCorrelationId;
+                msg = msg + "##" + correlationId;
+            }
+            connection.pendingGuesses.put(correlationId, System.nanoTime());
+        }
+        ByteBuffer frame = ByteBuffer.wrap(MessageSplitter.prependLengthHeader(msg).getBytes());
+        while (frame.hasRemaining()) {
+            connection.channel.write(frame);
+            if (frame.hasRemaining()) {
+                receive(0);
+            }
+        }
+        msgsSent++;
+    }
+
+    private Connection connect() throws IOException {
+        SocketChannel channel = SocketChannel.open(serverAddress);
+        channel.configureBlocking(false);
+        Connection connection = new Connection(channel);
+        channel.register(selector, SelectionKey.OP_READ, connection);
+        connectionCount++;
+        return connection;
+    }
+
+    private void receiveUntil(long deadline) throws IOException {
+        long nanosLeft;
+        while ((nanosLeft = deadline - System.nanoTime()) > 0) {
+            receive(Math.max(1, TimeUnit.NANOSECONDS.toMillis(nanosLeft)));
+        }
+    }
+
+    /**
+     * Reads everything the server has sent.
+     *
+     * @param timeoutMillis How long to wait for something to read, zero to not wait.
+     */
+    private void receive(long timeoutMillis) throws IOException {
+        if (timeoutMillis == 0) {
+            selector.selectNow();
+        } else {
+            selector.select(timeoutMillis);
+        }
+        Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+        while (iterator.hasNext()) {
+            SelectionKey key = iterator.next();
+            iterator.remove();
+            Connection connection = (Connection) key.attachment();
+            String recvdString = connection.buffer.receive(connection.channel);
+            bytesReceived += connection.buffer.lastReceived();
+            lastReceivedAt = System.nanoTime();
+            connection.splitter.appendRecvdString(recvdString);
+            while (connection.splitter.hasNext()) {
+                received(connection, connection.splitter.nextMsg());
+            }
+            if (connection.buffer.isEndOfStream()) {
+                key.cancel();
+                connection.channel.close();
+            }
+        }
+    }
+
+    private void received(Connection connection, String msg) {
+        if (FrameCompressor.isCompressed(msg)) {
+            try {
+                connection.decompressedSplitter.appendRecvdString(FrameCompressor.decompress(msg));
+            } catch (MessageException invalidFrame) {
+                System.err.println("Could not decompress message: " + invalidFrame.getMessage());
+            }
+            while (connection.decompressedSplitter.hasNext()) {
+                received(connection, connection.decompressedSplitter.nextMsg());
+            }
+            return;
+        }
+        msgsReceived++;
+        String[] parts = msg.split("##");
+        String correlationId = null;
+        if (parts.length > 7 && parts[2].equals("GUESS")) {
+            correlationId = parts[7];
+        } else if (parts.length > 9 && parts[2].equals("DELTA")) {
+            correlationId = parts[9];
+        }
+        if (correlationId != null) {
+            Long sentAt = connection.pendingGuesses.remove(correlationId);
+            if (sentAt != null) {
+                latencies.add(System.nanoTime() - sentAt);
+            }
+        }
+    }
+
+    private boolean hasUnanswered() {
+        for (Connection connection : connections.values()) {
+            if (!connection.pendingGuesses.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void close(Connection connection) throws IOException {
+        if (connection != null) {
+            connection.channel.close();
+        }
+    }
+
+    private void report(long sendingNanos) {
+        double seconds = sendingNanos / 1e9;
+        System.out.printf("Replayed %d messages on %d connections in %.3f s, %.1f messages/s%n",
+                          msgsSent, connectionCount, seconds, msgsSent / seconds);
+        System.out.printf("Received %d messages, %d bytes%n", msgsReceived, bytesReceived);
+        int unanswered = 0;
+        for (Connection connection : connections.values()) {
+            unanswered += connection.pendingGuesses.size();
+        }
+        if (latencies.isEmpty()) {
+            System.out.println("No guesses were answered, " + unanswered + " unanswered");
+            return;
+        }
+        Collections.sort(latencies);
+        System.out.printf("Guess latency in us: p50 %d, p90 %d, p99 %d, max %d, "
+                          + "%d answered, %d unanswered%n",
+                          percentile(50), percentile(90), percentile(99),
+                          TimeUnit.NANOSECONDS.toMicros(latencies.get(latencies.size() - 1)),
+                          latencies.size(), unanswered);
+    }
+
+    private long percentile(int percent) {
+        int index = (int) Math.ceil(percent / 100.0 * latencies.size()) - 1;
+        return TimeUnit.NANOSECONDS.toMicros(latencies.get(Math.max(0, index)));
+    }
+
+    private static class Connection {
+        private final SocketChannel channel;
+        private final ReceiveBuffer buffer = new ReceiveBuffer(ReceiveBuffer.MAX_CAPACITY);
+        private final MessageSplitter splitter = new MessageSplitter();
+        private final MessageSplitter decompressedSplitter = new MessageSplitter();
+        private final Map<String, Long> pendingGuesses = new HashMap<>();
+
+        private Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+}
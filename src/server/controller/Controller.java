@@ -1,41 +1,71 @@
 package server.controller;
 
+import server.model.Dictionary;
 import server.model.Game;
-import java.io.IOException;
+import server.model.GameState;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 /**
  *
  * @author yuchen
  */
 public class Controller {
-    private final Game game = new Game();
+    private final Game game;
+    private final Executor mailbox = new SerialExecutor(ForkJoinPool.commonPool());
+
+    /**
+     * Creates a game selecting words from the specified dictionary, which may be shared by many
+     * games.
+     */
+    public Controller(Dictionary dictionary) {
+        game = new Game(dictionary, Game.seed());
+    }
+
+    /**
+     * Runs the specified task in this game's mailbox. Tasks are run one at a time, in the order
+     * they were submitted, on a worker thread.
+     */
+    public void execute(Runnable task) {
+        mailbox.execute(task);
+    }
   
-    public void appendToHistory(String msg) {
-       game.appendEntry(msg);
+    public int appendToHistory(String msg) {
+       return game.appendEntry(msg);
     }
     
     public String[] getGameStatus() {
         return game.getGameStatus();
     }
     
-    public void playGame(String guess) {
-        game.playGame(guess);
+    public boolean isValidGuess(String guess) {
+        return game.isValidGuess(guess);
+    }
+
+    public GameState playGame(String guess) {
+        return game.playGame(guess);
     }
 
+    public GameState currentState() { return game.currentState(); }
+
     public String showCurrentState() { return game.showCurrentState(); }
     
     public int remainingGuesses() { return game.remainingGuesses(); }
     
     public boolean correctWord() { return game.correctWord(); }
     
-    public String getWord() { return game.word; }
+    public String getWord() { return game.currentState().word(); }
     
-    public int score() { return game.score; }
-
-    public void selectedWord() {
-        try {
-           game.selectedWord();
-        } catch(IOException ioe) {
-            ioe.printStackTrace();
-        }
+    public int score() { return game.currentState().score(); }
+
+    public void restore(GameState restored, String[] history) {
+        game.restore(restored, history);
+    }
+
+    public GameState prepareNextRound() {
+        return game.prepareNextRound();
+    }
+
+    public GameState startRound(GameState prepared) {
+        return game.startRound(prepared);
     }
 }
@@ -0,0 +1,46 @@
+package server.controller;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import server.log.Log;
+
+/**
+ * A mailbox that runs its tasks one at a time, in the order they were submitted, on the threads
+ * of a shared worker pool. Different mailboxes run in parallel, but the tasks of one mailbox never
+ * do.
+ */
+class SerialExecutor implements Executor {
+    private final Queue<Runnable> tasks = new ArrayDeque<>();
+    private final Executor workers;
+    private Runnable active;
+
+    /**
+     * @param workers The pool that runs the tasks.
+     */
+    SerialExecutor(Executor workers) {
+        this.workers = workers;
+    }
+
+    @Override
+    public synchronized void execute(Runnable task) {
+        tasks.add(() -> {
+            try {
+                task.run();
+            } catch (RuntimeException failedTask) {
+                Log.error("Game request failed", failedTask);
+            } finally {
+                scheduleNext();
+            }
+        });
+        if (active == null) {
+            scheduleNext();
+        }
+    }
+
+    private synchronized void scheduleNext() {
+        if ((active = tasks.poll()) != null) {
+            workers.execute(active);
+        }
+    }
+}
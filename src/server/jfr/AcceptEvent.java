@@ -0,0 +1,17 @@
+package server.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A player connection accepted by the server.
+ */
+@Name("hangman.Accept")
+@Label("Accept")
+@Category({"Hangman", "I/O"})
+public class AcceptEvent extends Event {
+    @Label("Connection Id")
+    public long connectionId;
+}
@@ -0,0 +1,20 @@
+package server.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Handling one message from a player on the I/O thread, up to passing it to the room.
+ */
+@Name("hangman.Command")
+@Label("Command")
+@Category({"Hangman", "I/O"})
+public class CommandEvent extends Event {
+    @Label("Connection Id")
+    public long connectionId;
+
+    @Label("Command")
+    public String command;
+}
@@ -0,0 +1,27 @@
+package server.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Reading from one client and splitting what was read into messages.
+ */
+@Name("hangman.Decode")
+@Label("Frame Decode")
+@Category({"Hangman", "I/O"})
+public class DecodeEvent extends Event {
+    @Label("Connection Id")
+    public long connectionId;
+
+    @Label("Bytes")
+    @DataAmount
+    public long bytes;
+
+    @Label("Frames")
+    @Description("Complete messages waiting to be handled after the read")
+    public int frames;
+}
@@ -0,0 +1,27 @@
+package server.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Writing queued messages to one client.
+ */
+@Name("hangman.Flush")
+@Label("Flush")
+@Category({"Hangman", "I/O"})
+public class FlushEvent extends Event {
+    @Label("Connection Id")
+    public long connectionId;
+
+    @Label("Bytes")
+    @DataAmount
+    public long bytes;
+
+    @Label("Queue Depth")
+    @Description("Messages still queued for the client after the flush")
+    public int queueDepth;
+}
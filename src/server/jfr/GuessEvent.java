@@ -0,0 +1,26 @@
+package server.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Evaluating a guess against the game state.
+ */
+@Name("hangman.Guess")
+@Label("Guess Evaluation")
+@Category({"Hangman", "Game"})
+public class GuessEvent extends Event {
+    @Label("Word Guess")
+    @Description("True if a whole word was guessed, false for a letter")
+    public boolean wordGuess;
+
+    @Label("Right")
+    public boolean right;
+
+    @Label("Retries")
+    @Description("Times the guess was evaluated again because another guess changed the state")
+    public int retries;
+}
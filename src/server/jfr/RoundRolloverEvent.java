@@ -0,0 +1,17 @@
+package server.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Replacing the current round with a prepared one.
+ */
+@Name("hangman.RoundRollover")
+@Label("Round Rollover")
+@Category({"Hangman", "Game"})
+public class RoundRolloverEvent extends Event {
+    @Label("Round")
+    public int round;
+}
@@ -0,0 +1,22 @@
+package server.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * One iteration of the server's selector loop, handling the keys selected by one select.
+ */
+@Name("hangman.SelectIteration")
+@Label("Select Iteration")
+@Category({"Hangman", "I/O"})
+public class SelectIterationEvent extends Event {
+    @Label("Ready Keys")
+    public int readyKeys;
+
+    @Label("Backlogged Clients")
+    @Description("Clients with received messages left over from earlier iterations")
+    public int backlogged;
+}
@@ -0,0 +1,20 @@
+package server.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Selecting the word of the next round.
+ */
+@Name("hangman.WordSelection")
+@Label("Word Selection")
+@Category({"Hangman", "Game"})
+public class WordSelectionEvent extends Event {
+    @Label("Dictionary Size")
+    public int dictionarySize;
+
+    @Label("Word Length")
+    public int wordLength;
+}
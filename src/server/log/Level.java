@@ -0,0 +1,11 @@
+package server.log;
+
+/**
+ * The severity of a log message, from least to most severe.
+ */
+public enum Level {
+    DEBUG,
+    INFO,
+    WARN,
+    ERROR
+}
@@ -0,0 +1,236 @@
+package server.log;
+
+import java.io.BufferedOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous server log. A thread that logs only places the message template and its arguments
+ * in a preallocated ring buffer, formatting and writing is done by a background thread. Logging
+ * never blocks, messages are dropped if the buffer is full. A message below the current level
+ * is discarded before anything is allocated, as long as its arguments are already objects.
+ * Primitive arguments are boxed by the call, so a caller passing them checks
+ * <code>isEnabled</code> first.
+ *
+ * The level is read from the system property <code>hangman.log.level</code>, default is
+ * <code>INFO</code>. Templates use <code>{}</code> as placeholder for up to three arguments. If
+ * the last argument is a <code>Throwable</code>, its stack trace is written after the message.
+ *
+ * The log is flushed and stopped by a shutdown hook. Work that must be done when the JVM shuts
+ * down, and that logs, is registered with <code>beforeShutdown</code> rather than in a hook of
+ * its own, since hooks run concurrently and what it logs after the log has stopped is lost.
+ */
+public class Log {
+    private static final int CAPACITY = 8192;
+    private static final long MAX_IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final LogRingBuffer buffer = new LogRingBuffer(CAPACITY);
+    private static volatile int threshold = readLevel().ordinal();
+    private static volatile boolean running = true;
+    private static final List<Runnable> shutdownTasks = new CopyOnWriteArrayList<>();
+    private static final Thread writer = startWriter();
+
+    private Log() {
+    }
+
+    /**
+     * Changes the lowest level that is logged.
+     */
+    public static void setLevel(Level level) {
+        threshold = level.ordinal();
+    }
+
+    /**
+     * @return <code>true</code> if messages of the specified level are logged.
+     */
+    public static boolean isEnabled(Level level) {
+        return level.ordinal() >= threshold;
+    }
+
+    /**
+     * Runs a task when the JVM shuts down, before the log is flushed and stopped. Tasks are run
+     * in the order they were registered, by the log's shutdown hook.
+     */
+    public static void beforeShutdown(Runnable task) {
+        shutdownTasks.add(task);
+    }
+
+    public static void debug(String msg) {
+        log(Level.DEBUG, msg, null, null, null);
+    }
+
+    public static void debug(String template, Object arg) {
+        log(Level.DEBUG, template, arg, null, null);
+    }
+
+    public static void debug(String template, Object arg1, Object arg2) {
+        log(Level.DEBUG, template, arg1, arg2, null);
+    }
+
+    public static void debug(String template, Object arg1, Object arg2, Object arg3) {
+        log(Level.DEBUG, template, arg1, arg2, arg3);
+    }
+
+    public static void info(String msg) {
+        log(Level.INFO, msg, null, null, null);
+    }
+
+    public static void info(String template, Object arg) {
+        log(Level.INFO, template, arg, null, null);
+    }
+
+    public static void info(String template, Object arg1, Object arg2) {
+        log(Level.INFO, template, arg1, arg2, null);
+    }
+
+    public static void info(String template, Object arg1, Object arg2, Object arg3) {
+        log(Level.INFO, template, arg1, arg2, arg3);
+    }
+
+    public static void warn(String msg) {
+        log(Level.WARN, msg, null, null, null);
+    }
+
+    public static void warn(String template, Object arg) {
+        log(Level.WARN, template, arg, null, null);
+    }
+
+    public static void warn(String template, Object arg1, Object arg2) {
+        log(Level.WARN, template, arg1, arg2, null);
+    }
+
+    public static void warn(String template, Object arg1, Object arg2, Object arg3) {
+        log(Level.WARN, template, arg1, arg2, arg3);
+    }
+
+    public static void error(String msg) {
+        log(Level.ERROR, msg, null, null, null);
+    }
+
+    public static void error(String template, Object arg) {
+        log(Level.ERROR, template, arg, null, null);
+    }
+
+    public static void error(String template, Object arg1, Object arg2) {
+        log(Level.ERROR, template, arg1, arg2, null);
+    }
+
+    public static void error(String template, Object arg1, Object arg2, Object arg3) {
+        log(Level.ERROR, template, arg1, arg2, arg3);
+    }
+
+    private static void log(Level level, String template, Object arg1, Object arg2,
+                            Object arg3) {
+        if (level.ordinal() < threshold) {
+            return;
+        }
+        buffer.offer(level, template, arg1, arg2, arg3);
+    }
+
+    private static Level readLevel() {
+        try {
+            return Level.valueOf(System.getProperty("hangman.log.level", "INFO").toUpperCase());
+        } catch (IllegalArgumentException unknownLevel) {
+            return Level.INFO;
+        }
+    }
+
+    private static Thread startWriter() {
+        Thread thread = new Thread(Log::writeEntries, "log-writer");
+        thread.setDaemon(true);
+        thread.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            for (Runnable task : shutdownTasks) {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    error("Shutdown task failed", e);
+                }
+            }
+            running = false;
+            LockSupport.unpark(thread);
+            try {
+                thread.join(1000);
+            } catch (InterruptedException interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }, "log-shutdown"));
+        return thread;
+    }
+
+    private static void writeEntries() {
+        PrintStream out = new PrintStream(new BufferedOutputStream(
+            new FileOutputStream(FileDescriptor.out), 8192), false);
+        PrintStream err = new PrintStream(new BufferedOutputStream(
+            new FileOutputStream(FileDescriptor.err), 8192), false);
+        SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm:ss.SSS");
+        StringBuilder line = new StringBuilder(256);
+        long idleNanos = 0;
+        boolean wroteSomething = false;
+        while (true) {
+            LogRingBuffer.Entry entry = buffer.peek();
+            if (entry == null) {
+                long dropped = buffer.takeDropped();
+                if (dropped > 0) {
+                    err.println(dropped + " log messages dropped, log buffer was full.");
+                    wroteSomething = true;
+                }
+                if (wroteSomething) {
+                    out.flush();
+                    err.flush();
+                    wroteSomething = false;
+                }
+                if (!running) {
+                    return;
+                }
+                idleNanos = Math.min(MAX_IDLE_NANOS, idleNanos * 2 + 1000);
+                LockSupport.parkNanos(idleNanos);
+                continue;
+            }
+            idleNanos = 0;
+            line.setLength(0);
+            line.append(timeFormat.format(new Date(entry.timestamp))).append(' ');
+            line.append(entry.level).append(" [").append(entry.thread).append("] ");
+            Throwable thrown = format(line, entry.template, entry.arg1, entry.arg2, entry.arg3);
+            PrintStream stream = entry.level.compareTo(Level.WARN) >= 0 ? err : out;
+            buffer.release(entry);
+            stream.println(line);
+            if (thrown != null) {
+                thrown.printStackTrace(stream);
+            }
+            wroteSomething = true;
+        }
+    }
+
+    /**
+     * Appends the template to the line, with placeholders replaced by arguments.
+     *
+     * @return The last argument if it is a throwable that was not used by a placeholder.
+     */
+    private static Throwable format(StringBuilder line, String template, Object arg1, Object arg2,
+                                    Object arg3) {
+        Object[] args = {arg1, arg2, arg3};
+        int argIndex = 0;
+        int start = 0;
+        int placeholder;
+        while (argIndex < args.length
+               && (placeholder = template.indexOf("{}", start)) >= 0) {
+            line.append(template, start, placeholder).append(args[argIndex++]);
+            start = placeholder + 2;
+        }
+        line.append(template, start, template.length());
+        int lastIndex = arg3 != null ? 2 : arg2 != null ? 1 : 0;
+        Object last = args[lastIndex];
+        boolean lastUsed = argIndex > lastIndex;
+        if (last instanceof Throwable && !lastUsed) {
+            return (Throwable) last;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,94 @@
+package server.log;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded buffer of log entries, with any number of producers and one consumer. All entries are
+ * allocated when the buffer is created and then reused, producers only claim a slot and fill in
+ * references. A producer never waits, if the buffer is full the entry is dropped and counted.
+ */
+class LogRingBuffer {
+    private final Entry[] entries;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile long head = 0;
+
+    /**
+     * @param capacity The number of entries, rounded up to a power of two.
+     */
+    LogRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        entries = new Entry[size];
+        for (int i = 0; i < size; i++) {
+            entries[i] = new Entry();
+        }
+        mask = size - 1;
+    }
+
+    /**
+     * Adds an entry, unless the buffer is full.
+     *
+     * @return <code>true</code> if the entry was added, <code>false</code> if it was dropped.
+     */
+    boolean offer(Level level, String template, Object arg1, Object arg2, Object arg3) {
+        long claimed;
+        do {
+            claimed = tail.get();
+            if (claimed - head >= entries.length) {
+                dropped.incrementAndGet();
+                return false;
+            }
+        } while (!tail.compareAndSet(claimed, claimed + 1));
+        Entry entry = entries[(int) (claimed & mask)];
+        entry.level = level;
+        entry.timestamp = System.currentTimeMillis();
+        entry.thread = Thread.currentThread().getName();
+        entry.template = template;
+        entry.arg1 = arg1;
+        entry.arg2 = arg2;
+        entry.arg3 = arg3;
+        entry.published = claimed;
+        return true;
+    }
+
+    /**
+     * Returns the oldest entry, which must be released with <code>release</code> once it has been
+     * written. May only be called by the consumer.
+     *
+     * @return The oldest entry, or <code>null</code> if there is no published entry.
+     */
+    Entry peek() {
+        Entry entry = entries[(int) (head & mask)];
+        return entry.published == head ? entry : null;
+    }
+
+    /**
+     * Gives the entry returned by <code>peek</code> back to the producers.
+     */
+    void release(Entry entry) {
+        entry.template = null;
+        entry.arg1 = null;
+        entry.arg2 = null;
+        entry.arg3 = null;
+        head = head + 1;
+    }
+
+    /**
+     * @return The number of entries dropped since the previous call.
+     */
+    long takeDropped() {
+        return dropped.getAndSet(0);
+    }
+
+    static class Entry {
+        private volatile long published = -1;
+        Level level;
+        long timestamp;
+        String thread;
+        String template;
+        Object arg1;
+        Object arg2;
+        Object arg3;
+    }
+}
@@ -0,0 +1,82 @@
+package server.model;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.stream.Stream;
+import server.log.Log;
+
+/**
+ * The words that can be selected, and that can be guessed. The word file is read once, when the
+ * dictionary is loaded. The words are then sorted and kept in memory as a minimal automaton,
+ * which is several times smaller than the strings, so large word lists can be used. A word is
+ * selected by its position in sorted order.
+ */
+public class Dictionary {
+    private static final String DEFAULT_PATH =
+        "/Users/nathaliehedin/IdeaProjects/homework2/src/resources/words.txt";
+    private final WordAutomaton words;
+
+    private Dictionary(WordAutomaton words) {
+        this.words = words;
+    }
+
+    /**
+     * Loads the word file specified by the system property <code>hangman.words</code>, or the
+     * default word file if that property is not set.
+     */
+    public static Dictionary load() throws IOException {
+        return load(Paths.get(System.getProperty("hangman.words", DEFAULT_PATH)));
+    }
+
+    /**
+     * Loads the specified word file, which has one word per line, in UTF-8. The words are
+     * converted to upper case, and duplicates are ignored.
+     */
+    public static Dictionary load(Path path) throws IOException {
+        WordAutomaton.Builder builder = new WordAutomaton.Builder();
+        try (Stream<String> lines = Files.lines(path)) {
+            lines.filter(line -> !line.isEmpty()).map(String::toUpperCase).sorted()
+                 .forEachOrdered(builder::add);
+        }
+        WordAutomaton words = builder.build();
+        if (words.size() == 0) {
+            throw new IOException("No words in " + path);
+        }
+        Log.info("Loaded {} words from {} into {} bytes", words.size(), path,
+                 words.memoryBytes());
+        return new Dictionary(words);
+    }
+
+    /**
+     * @param random The source of randomness.
+     * @return A randomly selected word, in upper case.
+     */
+    public String randomWord(Random random) {
+        return words.word(random.nextInt(words.size()));
+    }
+
+    /**
+     * @return The word at the specified index, in upper case. The words are in sorted order.
+     */
+    String word(int index) {
+        return words.word(index);
+    }
+
+    /**
+     * @param word A word, in any case.
+     * @return <code>true</code> if the specified word is in this dictionary.
+     */
+    public boolean contains(String word) {
+        return words.contains(word.toUpperCase());
+    }
+
+    /**
+     * @return The number of words.
+     */
+    public int size() {
+        return words.size();
+    }
+}
@@ -1,112 +1,184 @@
 package server.model;
 
-import java.io.IOException;
-import java.nio.file.*;
 import java.util.*;
-import java.util.stream.Stream;
+import java.util.concurrent.atomic.AtomicReference;
+import server.jfr.GuessEvent;
+import server.jfr.RoundRolloverEvent;
+import server.jfr.WordSelectionEvent;
+import server.log.Log;
 
 /**
+ * The game state is held as an immutable snapshot. Guesses and new rounds replace the snapshot
+ * with compare-and-set, so any thread may guess or read without locking.
  *
  * @author yuchen
  */
 public class Game {
+    /**
+     * The system property holding the seed of the word selection. All games created with the same
+     * seed select the same words in the same order, so that replayed traffic plays the same game.
+     */
+    public static final String SEED_PROPERTY = "hangman.seed";
     private final List<String> entries = Collections.synchronizedList(new ArrayList<>());
-    private boolean gameRound = false;
-    public String word;
-    public String currentState = "";
-    public char[] letterArray;
-    public char[] dashes;
-    private boolean first = true;
-    int remainingGuesses = 0;
-    public int score = 0;
-
-    public void appendEntry(String msg) {
-        entries.add(msg);
+    private final AtomicReference<GameState> state =
+        new AtomicReference<>(GameState.newRound("", 0, 0));
+    private final Dictionary dictionary;
+    private final Random random;
+
+    /**
+     * Creates a game selecting words from the specified dictionary, in an order given by the
+     * specified seed. Used when many games share one dictionary.
+     */
+    public Game(Dictionary dictionary, long seed) {
+        this.dictionary = dictionary;
+        this.random = new Random(seed);
+    }
+
+    /**
+     * @return The seed specified by the system property <code>hangman.seed</code>, or a random
+     *         seed if that property is not set.
+     */
+    public static long seed() {
+        Long seed = Long.getLong(SEED_PROPERTY);
+        return seed == null ? new Random().nextLong() : seed;
+    }
+
+    /**
+     * @return The sequence number of the new entry. The first entry has sequence number one.
+     */
+    public int appendEntry(String msg) {
+        synchronized (entries) {
+            entries.add(msg);
+            return entries.size();
+        }
     }
 
     public String[] getGameStatus() {
         return entries.toArray(new String[0]);
     }
 
-    public void selectedWord() throws IOException {
-        first = true;
-        Path path = Paths.get("/Users/nathaliehedin/IdeaProjects/homework2/src/resources/words.txt");
-        Stream<String> lines = Files.lines(path);
-        long numberOfLines = lines.count();
-        word = "";
-        Random ran = new Random();
-        int wordLine = ran.nextInt((int) numberOfLines);
-        word = Files.lines(path).skip(wordLine - 1).findFirst().get().toUpperCase();
-        letterArray = word.toCharArray();
-        remainingGuesses = word.length();
-        System.out.println("word = " + word);
-        System.out.println();
-        showCurrentState();
+    /**
+     * Selects the word of the next round and creates its first snapshot. This is expensive enough
+     * to do in advance, while the current round is still being played.
+     *
+     * @return The first snapshot of the next round, to be passed to <code>startRound</code>.
+     */
+    public GameState prepareNextRound() {
+        WordSelectionEvent selection = new WordSelectionEvent();
+        selection.begin();
+        String word = dictionary.randomWord(random);
+        if (selection.shouldCommit()) {
+            selection.dictionarySize = dictionary.size();
+            selection.wordLength = word.length();
+            selection.commit();
+        }
+        return GameState.newRound(word, state.get().round() + 1, 0);
+    }
+
+    /**
+     * Replaces the current round with a prepared one. The score is kept.
+     *
+     * @param prepared A snapshot created by <code>prepareNextRound</code>.
+     * @return The first snapshot of the new round.
+     */
+    public GameState startRound(GameState prepared) {
+        RoundRolloverEvent rollover = new RoundRolloverEvent();
+        rollover.begin();
+        GameState started = state.updateAndGet(current -> prepared.withScore(current.score()));
+        if (rollover.shouldCommit()) {
+            rollover.round = started.round();
+            rollover.commit();
+        }
+        Log.info("word = {}", started.word());
+        return started;
     }
 
-    public void emptyWord() {
-        first = false;
-        dashes = new char[letterArray.length];
-        for (int i = 0; i < dashes.length; i++)
-            dashes[i] = '_';
+    /**
+     * @param guess A letter or a word, not empty.
+     * @return <code>true</code> if the guess is a letter, or a word in the dictionary. Other
+     *         guesses must not be passed to <code>playGame</code>.
+     */
+    public boolean isValidGuess(String guess) {
+        return guess.length() == 1 || dictionary.contains(guess);
     }
 
-    public synchronized void playGame(String guess) {
-        guess = guess.toUpperCase();
-        if (guess.length() == 1) {
-            if (checkAndUpdateLetter(letterArray, guess.charAt(0))) {
-                System.out.println("Right letter");
+    /**
+     * Evaluates a guess against the current snapshot. The caller has checked the guess with
+     * <code>isValidGuess</code>.
+     *
+     * @param guess A letter or a word in the dictionary.
+     * @return The snapshot created by the guess, or <code>null</code> if the round is over and the
+     *         guess was ignored.
+     */
+    public GameState playGame(String guess) {
+        GuessEvent event = new GuessEvent();
+        event.begin();
+        String upperCaseGuess = guess.toUpperCase();
+        GameState current;
+        GameState next;
+        int retries = -1;
+        do {
+            retries++;
+            current = state.get();
+            if (current.isOver()) {
+                return null;
+            }
+            next = current.guess(upperCaseGuess);
+        } while (!state.compareAndSet(current, next));
+        if (event.shouldCommit()) {
+            event.wordGuess = upperCaseGuess.length() != 1;
+            event.right = event.wordGuess
+                ? next.correctWord() : next.remainingGuesses() == current.remainingGuesses();
+            event.retries = retries;
+            event.commit();
+        }
+
+        if (upperCaseGuess.length() == 1) {
+            if (next.remainingGuesses() == current.remainingGuesses()) {
+                Log.debug("{}: Right letter", upperCaseGuess);
             } else {
-                System.out.println("Wrong letter, try again!");
-                remainingGuesses--;
+                Log.debug("{}: Wrong letter, try again!", upperCaseGuess);
             }
         } else {
-            if (guess.compareTo(word) == 0) {
-                System.out.print("Win, the word is ");
-                dashes = word.toCharArray();
+            if (next.correctWord()) {
+                Log.debug("Win, the word is {}", next.word());
             } else {
-                System.out.println("Wrong word, try again!");
-                remainingGuesses--;
+                Log.debug("{}: Wrong word, try again!", upperCaseGuess);
             }
         }
+        return next;
     }
-    
-    public boolean correctWord() {
-        String dash = new String(dashes);
 
-        if(dash.toUpperCase().compareTo(word) == 0) {
-            score++;
-            return true;
+    /**
+     * Continues a game played elsewhere. Must be called before the game is played.
+     *
+     * @param restored The current snapshot of that game.
+     * @param history  The history of that game, oldest first.
+     */
+    public void restore(GameState restored, String[] history) {
+        synchronized (entries) {
+            entries.clear();
+            entries.addAll(Arrays.asList(history));
         }
-        else 
-            return false;
+        state.set(restored);
+    }
+
+    /**
+     * @return The current snapshot.
+     */
+    public GameState currentState() {
+        return state.get();
+    }
+
+    public boolean correctWord() {
+        return state.get().correctWord();
     }
-    
+
     public String showCurrentState() {
-        currentState = "";
-        if (first == true) emptyWord();
-        
-        for(int i=0; i<dashes.length; i++) {
-            currentState = currentState + dashes[i] + " ";
-        }
-        return currentState;
+        return state.get().showCurrentState();
     }
-    
+
     public int remainingGuesses() {
-        if(remainingGuesses == 0)
-            score--;
-        return remainingGuesses;
-    }
-        
-    private boolean checkAndUpdateLetter (char[] letters, char letter) {
-        boolean right = false;
-        System.out.println(letter);
-        for (int i = 0; i < letters.length; i++) {
-            if (letters[i] == letter) {
-               right = true;
-               dashes[i] = letter;
-            } 
-        }
-        return right;
+        return state.get().remainingGuesses();
     }
 }
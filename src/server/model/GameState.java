@@ -0,0 +1,194 @@
+package server.model;
+
+import java.util.Arrays;
+import java.util.StringJoiner;
+
+/**
+ * An immutable snapshot of the game. A guess never changes a snapshot, it creates a new one.
+ * Snapshots can therefore be read by any thread without locking, and everything read from the
+ * same snapshot is consistent.
+ */
+public final class GameState {
+    private static final char HIDDEN = '_';
+    private static final String NOTHING_REVEALED = "-";
+    private final String word;
+    private final char[] revealed;
+    private final int remainingGuesses;
+    private final int score;
+    private final int round;
+    private final int seq;
+    private final String lastDelta;
+
+    private GameState(String word, char[] revealed, int remainingGuesses, int score, int round,
+                      int seq, String lastDelta) {
+        this.word = word;
+        this.revealed = revealed;
+        this.remainingGuesses = remainingGuesses;
+        this.score = score;
+        this.round = round;
+        this.seq = seq;
+        this.lastDelta = lastDelta;
+    }
+
+    /**
+     * Creates the first snapshot of a round, where no letter is revealed.
+     *
+     * @param word  The word to guess, in upper case.
+     * @param round The number of the round.
+     * @param score The score so far.
+     */
+    public static GameState newRound(String word, int round, int score) {
+        char[] revealed = new char[word.length()];
+        Arrays.fill(revealed, HIDDEN);
+        return new GameState(word, revealed, word.length(), score, round, 0, NOTHING_REVEALED);
+    }
+
+    /**
+     * Recreates a snapshot from its parts, for example in a server process taking over the game
+     * from another.
+     *
+     * @param word     The word to guess, in upper case.
+     * @param revealed The word with an underscore for each letter that is not yet revealed, as
+     *                 returned by <code>revealed</code>.
+     */
+    public static GameState restore(String word, String revealed, int remainingGuesses, int score,
+                                    int round, int seq, String lastDelta) {
+        return new GameState(word, revealed.toCharArray(), remainingGuesses, score, round, seq,
+                             lastDelta);
+    }
+
+    /**
+     * @return A copy of this snapshot, with the specified score.
+     */
+    GameState withScore(int score) {
+        return new GameState(word, revealed, remainingGuesses, score, round, seq, lastDelta);
+    }
+
+    /**
+     * Evaluates a guess.
+     *
+     * @param guess A letter or a word, in upper case.
+     * @return The snapshot after the guess.
+     */
+    GameState guess(String guess) {
+        char[] nextRevealed = revealed.clone();
+        StringJoiner delta = new StringJoiner(",");
+        boolean right;
+        if (guess.length() == 1) {
+            right = reveal(nextRevealed, delta, guess.charAt(0));
+        } else {
+            right = guess.equals(word);
+            if (right) {
+                revealAll(nextRevealed, delta);
+            }
+        }
+        int nextRemaining = right ? remainingGuesses : remainingGuesses - 1;
+        int nextScore = score;
+        if (word.equals(new String(nextRevealed))) {
+            nextScore++;
+        } else if (nextRemaining == 0) {
+            nextScore--;
+        }
+        String nextDelta = delta.length() > 0 ? delta.toString() : NOTHING_REVEALED;
+        return new GameState(word, nextRevealed, nextRemaining, nextScore, round, seq + 1,
+                             nextDelta);
+    }
+
+    private boolean reveal(char[] nextRevealed, StringJoiner delta, char letter) {
+        boolean right = false;
+        for (int i = 0; i < nextRevealed.length; i++) {
+            if (word.charAt(i) == letter) {
+                right = true;
+                if (nextRevealed[i] != letter) {
+                    delta.add(Integer.toString(i) + letter);
+                }
+                nextRevealed[i] = letter;
+            }
+        }
+        return right;
+    }
+
+    private void revealAll(char[] nextRevealed, StringJoiner delta) {
+        for (int i = 0; i < nextRevealed.length; i++) {
+            if (nextRevealed[i] != word.charAt(i)) {
+                delta.add(Integer.toString(i) + word.charAt(i));
+                nextRevealed[i] = word.charAt(i);
+            }
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the entire word is revealed.
+     */
+    public boolean correctWord() {
+        return word.equals(new String(revealed));
+    }
+
+    /**
+     * @return <code>true</code> if no more guesses are accepted in this round.
+     */
+    public boolean isOver() {
+        return correctWord() || remainingGuesses <= 0;
+    }
+
+    /**
+     * @return The word, with a blank after each letter and an underscore for each letter that is
+     *         not yet revealed.
+     */
+    public String showCurrentState() {
+        StringBuilder currentState = new StringBuilder(revealed.length * 2);
+        appendCurrentState(currentState);
+        return currentState.toString();
+    }
+
+    /**
+     * Appends what <code>showCurrentState</code> returns, without creating a string.
+     */
+    public void appendCurrentState(StringBuilder msg) {
+        for (char letter : revealed) {
+            msg.append(letter).append(' ');
+        }
+    }
+
+    public String word() {
+        return word;
+    }
+
+    /**
+     * @return The word with an underscore for each letter that is not yet revealed.
+     */
+    public String revealed() {
+        return new String(revealed);
+    }
+
+    public int remainingGuesses() {
+        return remainingGuesses;
+    }
+
+    public int score() {
+        return score;
+    }
+
+    /**
+     * @return The round number, incremented each time a new word is selected.
+     */
+    public int round() {
+        return round;
+    }
+
+    /**
+     * @return The number of guesses made in this round.
+     */
+    public int seq() {
+        return seq;
+    }
+
+    /**
+     * Returns the positions revealed by the guess that created this snapshot, as comma separated
+     * <code>position letter</code> pairs, for example <code>2E,5E</code>. A guess that revealed
+     * nothing gives <code>-</code>.
+     */
+    public String lastDelta() {
+        return lastDelta;
+    }
+}
@@ -0,0 +1,237 @@
+package server.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Picks the next guess for a masked word. The dictionary is indexed once, as bitsets over the
+ * words of each length, with one bitset per position and letter, and one per letter telling which
+ * words contain it. The candidates for a masked word are found by intersecting those bitsets, and
+ * the letters are scored by counting the candidates containing each of them. Large candidate sets
+ * are counted in parallel, with fork/join.
+ *
+ * Only the letters A to Z are indexed. A solver is immutable once created, and may be used by any
+ * number of threads.
+ */
+public class Solver {
+    private static final int LETTERS = 26;
+    private static final char HIDDEN = '_';
+    /**
+     * The letters in order of frequency in English, guessed when there are no candidates.
+     */
+    private static final String FALLBACK_ORDER = "ETAOINSHRDLCUMWFGYPBVKJXQZ";
+    private final Index[] indexes;
+
+    /**
+     * Indexes all words in the specified dictionary.
+     */
+    public Solver(Dictionary dictionary) {
+        List<List<String>> wordsPerLength = new ArrayList<>();
+        for (int i = 0; i < dictionary.size(); i++) {
+            String word = dictionary.word(i);
+            while (wordsPerLength.size() <= word.length()) {
+                wordsPerLength.add(new ArrayList<>());
+            }
+            wordsPerLength.get(word.length()).add(word);
+        }
+        indexes = new Index[wordsPerLength.size()];
+        for (int length = 0; length < indexes.length; length++) {
+            List<String> words = wordsPerLength.get(length);
+            if (!words.isEmpty()) {
+                indexes[length] = new Index(length, words.toArray(new String[0]));
+            }
+        }
+    }
+
+    /**
+     * Picks the next guess.
+     *
+     * @param maskedState    The masked word, as returned by
+     *                       <code>GameState.showCurrentState</code>.
+     * @param guessedLetters The letters guessed so far in this round, in upper case.
+     * @return A letter, or the word if only one candidate is left.
+     */
+    public String nextGuess(String maskedState, String guessedLetters) {
+        char[] pattern = new char[(maskedState.length() + 1) / 2];
+        for (int i = 0; i < pattern.length; i++) {
+            pattern[i] = maskedState.charAt(i * 2);
+        }
+        boolean[] guessed = new boolean[LETTERS];
+        for (int i = 0; i < guessedLetters.length(); i++) {
+            int letter = letterIndex(guessedLetters.charAt(i));
+            if (letter >= 0) {
+                guessed[letter] = true;
+            }
+        }
+        Index index = pattern.length < indexes.length ? indexes[pattern.length] : null;
+        if (index == null) {
+            return fallback(guessed);
+        }
+        long[] candidates = index.candidates(pattern, guessed);
+        int count = cardinality(candidates);
+        if (count == 0) {
+            return fallback(guessed);
+        }
+        if (count == 1) {
+            return index.words[firstSet(candidates)];
+        }
+        int[] scores = new LetterCounts(index.containing, candidates, 0,
+                                        candidates.length).invoke();
+        int best = -1;
+        for (int letter = 0; letter < LETTERS; letter++) {
+            if (!guessed[letter] && scores[letter] > 0
+                && (best < 0 || scores[letter] > scores[best])) {
+                best = letter;
+            }
+        }
+        if (best < 0) {
+            return index.words[firstSet(candidates)];
+        }
+        return String.valueOf((char) ('A' + best));
+    }
+
+    private String fallback(boolean[] guessed) {
+        for (int i = 0; i < FALLBACK_ORDER.length(); i++) {
+            char letter = FALLBACK_ORDER.charAt(i);
+            if (!guessed[letter - 'A']) {
+                return String.valueOf(letter);
+            }
+        }
+        return String.valueOf(FALLBACK_ORDER.charAt(0));
+    }
+
+    private static int letterIndex(char letter) {
+        return letter >= 'A' && letter <= 'Z' ? letter - 'A' : -1;
+    }
+
+    private static int cardinality(long[] bits) {
+        int count = 0;
+        for (long word : bits) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    private static int firstSet(long[] bits) {
+        for (int i = 0; i < bits.length; i++) {
+            if (bits[i] != 0) {
+                return i * 64 + Long.numberOfTrailingZeros(bits[i]);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * The bitsets of all words with the same length.
+     */
+    private static class Index {
+        private final String[] words;
+        private final long[] all;
+        private final long[][] letterAt;
+        private final long[][] containing;
+
+        private Index(int length, String[] words) {
+            this.words = words;
+            int size = (words.length + 63) / 64;
+            all = new long[size];
+            letterAt = new long[length * LETTERS][size];
+            containing = new long[LETTERS][size];
+            for (int w = 0; w < words.length; w++) {
+                long bit = 1L << w;
+                all[w / 64] |= bit;
+                for (int position = 0; position < length; position++) {
+                    int letter = letterIndex(words[w].charAt(position));
+                    if (letter >= 0) {
+                        letterAt[position * LETTERS + letter][w / 64] |= bit;
+                        containing[letter][w / 64] |= bit;
+                    }
+                }
+            }
+        }
+
+        /**
+         * A word is a candidate if it has the revealed letters at their positions, and none of
+         * the guessed letters at a hidden position, since a right guess reveals all positions of
+         * the letter.
+         */
+        private long[] candidates(char[] pattern, boolean[] guessed) {
+            long[] candidates = all.clone();
+            for (int position = 0; position < pattern.length; position++) {
+                if (pattern[position] == HIDDEN) {
+                    for (int letter = 0; letter < LETTERS; letter++) {
+                        if (guessed[letter]) {
+                            andNot(candidates, letterAt[position * LETTERS + letter]);
+                        }
+                    }
+                } else {
+                    int letter = letterIndex(pattern[position]);
+                    if (letter >= 0) {
+                        and(candidates, letterAt[position * LETTERS + letter]);
+                    }
+                }
+            }
+            return candidates;
+        }
+
+        private static void and(long[] bits, long[] other) {
+            for (int i = 0; i < bits.length; i++) {
+                bits[i] &= other[i];
+            }
+        }
+
+        private static void andNot(long[] bits, long[] other) {
+            for (int i = 0; i < bits.length; i++) {
+                bits[i] &= ~other[i];
+            }
+        }
+    }
+
+    /**
+     * Counts, for each letter, the candidates containing it. The bitsets are split into ranges
+     * that are counted in parallel, until a range is small enough to count at once.
+     */
+    private static class LetterCounts extends RecursiveTask<int[]> {
+        /**
+         * The most bitset words counted by one task, which is 4096 dictionary words.
+         */
+        private static final int THRESHOLD = 64;
+        private static final long serialVersionUID = 1L;
+        private final long[][] containing;
+        private final long[] candidates;
+        private final int from;
+        private final int to;
+
+        private LetterCounts(long[][] containing, long[] candidates, int from, int to) {
+            this.containing = containing;
+            this.candidates = candidates;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected int[] compute() {
+            if (to - from <= THRESHOLD) {
+                int[] counts = new int[LETTERS];
+                for (int letter = 0; letter < LETTERS; letter++) {
+                    long[] words = containing[letter];
+                    int count = 0;
+                    for (int i = from; i < to; i++) {
+                        count += Long.bitCount(candidates[i] & words[i]);
+                    }
+                    counts[letter] = count;
+                }
+                return counts;
+            }
+            int middle = (from + to) >>> 1;
+            LetterCounts upper = new LetterCounts(containing, candidates, middle, to);
+            upper.fork();
+            int[] counts = new LetterCounts(containing, candidates, from, middle).compute();
+            int[] upperCounts = upper.join();
+            for (int letter = 0; letter < LETTERS; letter++) {
+                counts[letter] += upperCounts[letter];
+            }
+            return counts;
+        }
+    }
+}
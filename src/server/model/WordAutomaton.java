@@ -0,0 +1,294 @@
+package server.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A set of words stored as a minimal acyclic automaton. Words with a common prefix share the
+ * states of the prefix, and words with a common suffix share the states of the suffix, so a large
+ * word list takes a fraction of the memory of its strings. Each state knows how many words it
+ * accepts, which numbers the words in sorted order: the word with a given number is found by
+ * walking from the start state, without enumerating the words before it.
+ *
+ * The automaton is stored in arrays, state <code>s</code> has the arcs from
+ * <code>firstArc[s]</code> to <code>firstArc[s + 1]</code>, sorted by label. An automaton is
+ * immutable once built, and may be used by any number of threads.
+ */
+final class WordAutomaton {
+    private final int[] firstArc;
+    private final char[] labels;
+    private final int[] targets;
+    private final int[] counts;
+    private final long[] accepting;
+
+    private WordAutomaton(int[] firstArc, char[] labels, int[] targets, int[] counts,
+                          long[] accepting) {
+        this.firstArc = firstArc;
+        this.labels = labels;
+        this.targets = targets;
+        this.counts = counts;
+        this.accepting = accepting;
+    }
+
+    /**
+     * @return The number of words.
+     */
+    int size() {
+        return counts[0];
+    }
+
+    /**
+     * @return The number of states.
+     */
+    int states() {
+        return counts.length;
+    }
+
+    /**
+     * @return The approximate number of bytes used by the arrays of this automaton.
+     */
+    long memoryBytes() {
+        return 4L * firstArc.length + 2L * labels.length + 4L * targets.length
+               + 4L * counts.length + 8L * accepting.length;
+    }
+
+    /**
+     * @return <code>true</code> if the specified word is in the set.
+     */
+    boolean contains(CharSequence word) {
+        int state = 0;
+        for (int i = 0; i < word.length(); i++) {
+            int arc = arc(state, word.charAt(i));
+            if (arc < 0) {
+                return false;
+            }
+            state = targets[arc];
+        }
+        return isAccepting(state);
+    }
+
+    /**
+     * @param rank The position of the word in sorted order, from zero.
+     * @return The word at the specified position.
+     * @throws IndexOutOfBoundsException If there is no such word.
+     */
+    String word(int rank) {
+        if (rank < 0 || rank >= size()) {
+            throw new IndexOutOfBoundsException("No word " + rank + " of " + size());
+        }
+        StringBuilder word = new StringBuilder();
+        int state = 0;
+        while (true) {
+            if (isAccepting(state)) {
+                if (rank == 0) {
+                    return word.toString();
+                }
+                rank--;
+            }
+            int arc = firstArc[state];
+            while (rank >= counts[targets[arc]]) {
+                rank -= counts[targets[arc]];
+                arc++;
+            }
+            word.append(labels[arc]);
+            state = targets[arc];
+        }
+    }
+
+    private boolean isAccepting(int state) {
+        return (accepting[state >>> 6] & (1L << state)) != 0;
+    }
+
+    /**
+     * @return The arc of the specified state with the specified label, or -1 if there is none.
+     */
+    private int arc(int state, char label) {
+        int low = firstArc[state];
+        int high = firstArc[state + 1] - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (labels[middle] < label) {
+                low = middle + 1;
+            } else if (labels[middle] > label) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Builds an automaton from words added in sorted order, minimizing it as the words are added.
+     * When a word is added, the states of the previous word that are not on the path of the new
+     * word will not change any more, and are replaced by equivalent states already built, if
+     * there are any. Only the states of the latest word and one state per equivalence class are
+     * therefore kept while building.
+     */
+    static final class Builder {
+        private final Map<Node, Node> register = new HashMap<>();
+        private final List<Node> path = new ArrayList<>();
+        private String previous = null;
+
+        Builder() {
+            path.add(new Node());
+        }
+
+        /**
+         * Adds a word. A word equal to the previous one is ignored.
+         *
+         * @throws IllegalArgumentException If the word is before the previous one in sorted
+         *                                  order.
+         */
+        void add(String word) {
+            int prefix = 0;
+            if (previous != null) {
+                int order = word.compareTo(previous);
+                if (order == 0) {
+                    return;
+                }
+                if (order < 0) {
+                    throw new IllegalArgumentException("Word " + word + " added after "
+                                                       + previous);
+                }
+                int common = Math.min(word.length(), previous.length());
+                while (prefix < common && word.charAt(prefix) == previous.charAt(prefix)) {
+                    prefix++;
+                }
+            }
+            minimize(prefix);
+            for (int i = prefix; i < word.length(); i++) {
+                Node next = new Node();
+                path.get(i).add(word.charAt(i), next);
+                path.add(next);
+            }
+            path.get(word.length()).accepting = true;
+            previous = word;
+        }
+
+        /**
+         * @return The automaton of all words added so far.
+         */
+        WordAutomaton build() {
+            minimize(0);
+            Node start = path.get(0);
+            start.countWords();
+            Map<Node, Integer> numbers = new IdentityHashMap<>();
+            List<Node> states = new ArrayList<>();
+            numbers.put(start, 0);
+            states.add(start);
+            int arcs = 0;
+            for (int s = 0; s < states.size(); s++) {
+                Node state = states.get(s);
+                arcs += state.arcs;
+                for (int arc = 0; arc < state.arcs; arc++) {
+                    if (numbers.putIfAbsent(state.targets[arc], states.size()) == null) {
+                        states.add(state.targets[arc]);
+                    }
+                }
+            }
+            int[] firstArc = new int[states.size() + 1];
+            char[] labels = new char[arcs];
+            int[] targets = new int[arcs];
+            int[] counts = new int[states.size()];
+            long[] accepting = new long[(states.size() + 63) / 64];
+            int arc = 0;
+            for (int s = 0; s < states.size(); s++) {
+                Node state = states.get(s);
+                firstArc[s] = arc;
+                counts[s] = state.count;
+                if (state.accepting) {
+                    accepting[s >>> 6] |= 1L << s;
+                }
+                for (int i = 0; i < state.arcs; i++, arc++) {
+                    labels[arc] = state.labels[i];
+                    targets[arc] = numbers.get(state.targets[i]);
+                }
+            }
+            firstArc[states.size()] = arc;
+            return new WordAutomaton(firstArc, labels, targets, counts, accepting);
+        }
+
+        /**
+         * Replaces or registers the states of the previous word after the specified prefix
+         * length, from the last one.
+         */
+        private void minimize(int prefix) {
+            for (int i = path.size() - 1; i > prefix; i--) {
+                Node state = path.remove(i);
+                state.countWords();
+                Node equivalent = register.putIfAbsent(state, state);
+                if (equivalent != null) {
+                    path.get(i - 1).replaceLastTarget(equivalent);
+                }
+            }
+        }
+    }
+
+    /**
+     * A state while building. Two states are equivalent if both or none are accepting, and they
+     * have the same arcs to the same states. States are only compared once their arcs are final.
+     */
+    private static final class Node {
+        private static final char[] NO_LABELS = new char[0];
+        private static final Node[] NO_TARGETS = new Node[0];
+        private char[] labels = NO_LABELS;
+        private Node[] targets = NO_TARGETS;
+        private int arcs = 0;
+        private boolean accepting = false;
+        private int count = 0;
+
+        private void add(char label, Node target) {
+            if (arcs == labels.length) {
+                int capacity = Math.max(2, arcs * 2);
+                labels = Arrays.copyOf(labels, capacity);
+                targets = Arrays.copyOf(targets, capacity);
+            }
+            labels[arcs] = label;
+            targets[arcs] = target;
+            arcs++;
+        }
+
+        private void replaceLastTarget(Node target) {
+            targets[arcs - 1] = target;
+        }
+
+        private void countWords() {
+            count = accepting ? 1 : 0;
+            for (int arc = 0; arc < arcs; arc++) {
+                count += targets[arc].count;
+            }
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Node)) {
+                return false;
+            }
+            Node node = (Node) other;
+            if (accepting != node.accepting || arcs != node.arcs) {
+                return false;
+            }
+            for (int arc = 0; arc < arcs; arc++) {
+                if (labels[arc] != node.labels[arc] || targets[arc] != node.targets[arc]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = accepting ? 1 : 0;
+            for (int arc = 0; arc < arcs; arc++) {
+                hash = hash * 31 + labels[arc];
+                hash = hash * 31 + System.identityHashCode(targets[arc]);
+            }
+            return hash;
+        }
+    }
+}
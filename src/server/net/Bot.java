@@ -0,0 +1,190 @@
+package server.net;
+
+import common.MessageSplitter;
+import common.MsgType;
+import common.ReceiveBuffer;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ThreadLocalRandom;
+import server.log.Level;
+import server.log.Log;
+import server.model.Solver;
+
+/**
+ * A player run by the server. A bot connects to the server's own port like any client, and is
+ * therefore served by an ordinary <code>PlayerHandler</code>. It follows the broadcasts of its
+ * room to know the masked word and the guessed letters, and guesses each time the game has
+ * changed, after thinking for a random time around the think time, so that bots do not all guess
+ * at once. Everything received while thinking is taken into account,
+ * so that the bot does not repeat what other players guessed in the meantime. Each bot runs on
+ * its own thread, with its own selector.
+ */
+class Bot implements Runnable {
+    /**
+     * The system property holding how long bots think before each guess, in milliseconds.
+     */
+    static final String THINK_PROPERTY = "hangman.bot.think";
+    static final long DEFAULT_THINK_MILLIS = 1000;
+    private static final char HIDDEN = '_';
+    private final String name;
+    private final String roomName;
+    private final InetSocketAddress serverAddress;
+    private final Solver solver;
+    private final long thinkMillis;
+    private final MessageSplitter msgSplitter = new MessageSplitter();
+    private final ReceiveBuffer msgFromServer = new ReceiveBuffer(ReceiveBuffer.MAX_CAPACITY);
+    private final StringBuilder guessed = new StringBuilder();
+    private char[] masked;
+    private boolean changed = false;
+
+    /**
+     * @param thinkMillis How long the bot waits before each guess, on average.
+     */
+    Bot(String name, String roomName, InetSocketAddress serverAddress, Solver solver,
+        long thinkMillis) {
+        this.name = name;
+        this.roomName = roomName;
+        this.serverAddress = serverAddress;
+        this.solver = solver;
+        this.thinkMillis = thinkMillis;
+    }
+
+    /**
+     * Starts the specified bot on a daemon thread named after it.
+     */
+    static void start(Bot bot) {
+        Thread thread = new Thread(bot, bot.name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+        try (SocketChannel channel = SocketChannel.open(serverAddress);
+             Selector selector = Selector.open()) {
+            channel.configureBlocking(false);
+            channel.register(selector, SelectionKey.OP_READ);
+            send(channel, MsgType.HELLO + "##none##" + roomName);
+            send(channel, MsgType.USER + "##" + name);
+            while (receive(channel)) {
+                if (masked != null && changed) {
+                    Thread.sleep(thinkMillis / 2
+                                 + ThreadLocalRandom.current().nextLong(thinkMillis + 1));
+                    if (!receive(channel)) {
+                        break;
+                    }
+                    if (masked != null) {
+                        guess(channel);
+                    }
+                }
+                selector.select();
+                selector.selectedKeys().clear();
+            }
+        } catch (IOException ioe) {
+            Log.warn("Bot {} lost its connection", name, ioe);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Follows everything the server has sent so far.
+     *
+     * @return <code>false</code> if the server has closed the connection.
+     */
+    private boolean receive(SocketChannel channel) throws IOException {
+        msgSplitter.appendRecvdString(msgFromServer.receive(channel));
+        while (msgSplitter.hasNext()) {
+            received(msgSplitter.nextMsg());
+        }
+        return !msgFromServer.isEndOfStream();
+    }
+
+    private void guess(SocketChannel channel) throws IOException {
+        long startedAt = System.nanoTime();
+        String guess = solver.nextGuess(new String(masked), guessed.toString());
+        if (Log.isEnabled(Level.DEBUG)) {
+            Log.debug("{} decided on {} in {} us", name, guess,
+                      (System.nanoTime() - startedAt) / 1000);
+        }
+        if (guess.length() == 1) {
+            guessed.append(guess);
+        }
+        changed = false;
+        send(channel, MsgType.GUESS + "##" + guess);
+    }
+
+    /**
+     * Follows the game. Broadcasts are <code>BROADCAST##seq##TYPE##...</code>, other messages are
+     * ignored.
+     */
+    private void received(String msg) {
+        String[] info = msg.split("##");
+        if (info.length < 4 || !info[0].equals(MsgType.BROADCAST.toString())) {
+            return;
+        }
+        try {
+            switch (info[2]) {
+                case "NEWGAME":
+                    masked = info[3].toCharArray();
+                    guessed.setLength(0);
+                    changed = true;
+                    break;
+                case "GUESS":
+                    if (masked != null) {
+                        addGuess(info[4]);
+                        masked = info[5].toCharArray();
+                        changed = true;
+                    }
+                    break;
+                case "DELTA":
+                    if (masked != null) {
+                        addGuess(info[4]);
+                        reveal(info[7]);
+                        changed = true;
+                    }
+                    break;
+                case "ENDGAME":
+                    masked = null;
+                    break;
+                default:
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException invalidMsg) {
+            Log.warn("Bot {} could not follow {}", name, msg);
+        }
+    }
+
+    private void addGuess(String guess) {
+        String letter = guess.toUpperCase();
+        if (letter.length() == 1 && guessed.indexOf(letter) < 0) {
+            guessed.append(letter);
+        }
+    }
+
+    /**
+     * Applies a delta, comma separated <code>position letter</code> pairs or <code>-</code>. The
+     * masked word has a blank after each letter.
+     */
+    private void reveal(String delta) {
+        if (delta.equals("-")) {
+            return;
+        }
+        for (String revealed : delta.split(",")) {
+            int position = Integer.parseInt(revealed.substring(0, revealed.length() - 1));
+            if (position * 2 < masked.length && masked[position * 2] == HIDDEN) {
+                masked[position * 2] = revealed.charAt(revealed.length() - 1);
+            }
+        }
+    }
+
+    private void send(SocketChannel channel, String msg) throws IOException {
+        ByteBuffer frame = ByteBuffer.wrap(MessageSplitter.prependLengthHeader(msg).getBytes());
+        while (frame.hasRemaining()) {
+            channel.write(frame);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package server.net;
+
+import common.MessageSplitter;
+import common.ReceiveBuffer;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * A connection to another node in the cluster. Messages use the same length header framing as
+ * messages to and from players. Messages may be sent from any thread, everything else is done on
+ * the I/O thread.
+ */
+class ClusterLink {
+    private final HangmanServer server;
+    private final ClusterNode cluster;
+    private final SocketChannel channel;
+    private final MessageSplitter msgSplitter = new MessageSplitter();
+    private final ReceiveBuffer msgFromPeer = new ReceiveBuffer(PlayerHandler.RECEIVE_BUDGET);
+    private final Queue<ByteBuffer> messagesToSend = new ArrayDeque<>();
+    private final Map<Long, RemotePlayer> remotePlayers = new HashMap<>();
+    private volatile boolean connected;
+
+    /**
+     * @param connected <code>false</code> if the channel is still connecting.
+     */
+    ClusterLink(HangmanServer server, ClusterNode cluster, SocketChannel channel,
+                boolean connected) {
+        this.server = server;
+        this.cluster = cluster;
+        this.channel = channel;
+        this.connected = connected;
+    }
+
+    /**
+     * Queues a message for the other node. Messages sent while the link is connecting are sent
+     * once it is connected.
+     */
+    void send(String msg) {
+        ByteBuffer msgWithHeader =
+            ByteBuffer.wrap(MessageSplitter.prependLengthHeader(msg).getBytes());
+        synchronized (messagesToSend) {
+            messagesToSend.add(msgWithHeader);
+        }
+        server.requestWrite(channel);
+    }
+
+    boolean isConnected() {
+        return connected;
+    }
+
+    void finishConnect(SelectionKey key) throws IOException {
+        channel.finishConnect();
+        connected = true;
+        key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+    }
+
+    void recvMsg() throws IOException {
+        msgSplitter.appendRecvdString(msgFromPeer.receive(channel));
+        while (msgSplitter.hasNext()) {
+            cluster.handle(this, msgSplitter.nextMsg());
+        }
+        if (msgFromPeer.isEndOfStream()) {
+            throw new IOException("Cluster node has closed connection.");
+        }
+    }
+
+    void sendAll(SelectionKey key) throws IOException {
+        synchronized (messagesToSend) {
+            ByteBuffer msg;
+            while ((msg = messagesToSend.peek()) != null) {
+                channel.write(msg);
+                if (msg.hasRemaining()) {
+                    return;
+                }
+                messagesToSend.remove();
+            }
+            key.interestOps(SelectionKey.OP_READ);
+        }
+    }
+
+    /**
+     * Returns the stand-in for a player connected to the other node, creating it if this is the
+     * player's first request.
+     */
+    RemotePlayer remotePlayer(long id, String roomName) {
+        return remotePlayers.computeIfAbsent(id, newId -> new RemotePlayer(newId, roomName, this));
+    }
+
+    void removeRemotePlayer(long id) {
+        remotePlayers.remove(id);
+    }
+
+    void close() throws IOException {
+        connected = false;
+        channel.close();
+    }
+}
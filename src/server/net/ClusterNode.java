@@ -0,0 +1,222 @@
+package server.net;
+
+import common.MessageException;
+import common.MsgType;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import server.log.Log;
+
+/**
+ * This server's part of a cluster. Each room is owned by exactly one node, which plays the room's
+ * game. Players may connect to any node, requests from players in rooms owned by another node are
+ * forwarded to the owner, which relays the room's broadcasts back.
+ *
+ * The cluster is described by a static configuration file, with one entry per line:
+ * <pre>
+ * node &lt;id&gt; &lt;host&gt; &lt;cluster port&gt;
+ * room &lt;name&gt; &lt;owning node id&gt;
+ * </pre>
+ * Rooms that are not listed are owned by a node selected from the hash of the room name. Empty
+ * lines and lines starting with <code>#</code> are ignored.
+ *
+ * Nodes exchange the following messages.
+ * <ul>
+ * <li><code>SUBSCRIBE##room##known</code>, asks the owner to relay the room's broadcasts, after
+ * the history entries from index <code>known</code>.</li>
+ * <li><code>FORWARD##room##playerId##message</code>, a player's request.</li>
+ * <li><code>RELAY##room##message</code>, a broadcast in the room.</li>
+ * <li><code>UNICAST##room##playerId##message</code>, a message to one player only.</li>
+ * </ul>
+ */
+class ClusterNode {
+    private final HangmanServer server;
+    private final int nodeId;
+    private final Map<Integer, InetSocketAddress> nodes;
+    private final Map<String, Integer> roomOwners;
+    private final Map<Integer, ClusterLink> links = new HashMap<>();
+    private Selector selector;
+
+    private ClusterNode(HangmanServer server, int nodeId, Map<Integer, InetSocketAddress> nodes,
+                        Map<String, Integer> roomOwners) {
+        this.server = server;
+        this.nodeId = nodeId;
+        this.nodes = nodes;
+        this.roomOwners = roomOwners;
+    }
+
+    /**
+     * Reads the cluster configuration.
+     *
+     * @param server The server running this node.
+     * @param config The configuration file.
+     * @param nodeId The id of this node.
+     * @throws IOException If the file could not be read, or is not a valid configuration.
+     */
+    static ClusterNode load(HangmanServer server, Path config, int nodeId) throws IOException {
+        Map<Integer, InetSocketAddress> nodes = new TreeMap<>();
+        Map<String, Integer> roomOwners = new HashMap<>();
+        for (String line : Files.readAllLines(config)) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] tokens = line.split("\\s+");
+            try {
+                if (tokens[0].equals("node") && tokens.length == 4) {
+                    nodes.put(Integer.parseInt(tokens[1]),
+                              new InetSocketAddress(tokens[2], Integer.parseInt(tokens[3])));
+                } else if (tokens[0].equals("room") && tokens.length == 3) {
+                    roomOwners.put(tokens[1], Integer.parseInt(tokens[2]));
+                } else {
+                    throw new IOException("Invalid cluster configuration: " + line);
+                }
+            } catch (NumberFormatException nfe) {
+                throw new IOException("Invalid cluster configuration: " + line, nfe);
+            }
+        }
+        if (!nodes.containsKey(nodeId)) {
+            throw new IOException("Node " + nodeId + " is not in " + config);
+        }
+        for (int owner : roomOwners.values()) {
+            if (!nodes.containsKey(owner)) {
+                throw new IOException("Room owner " + owner + " is not in " + config);
+            }
+        }
+        return new ClusterNode(server, nodeId, nodes, roomOwners);
+    }
+
+    /**
+     * @return The id of the node that owns the specified room.
+     */
+    int ownerOf(String roomName) {
+        Integer owner = roomOwners.get(roomName);
+        if (owner != null) {
+            return owner;
+        }
+        List<Integer> ids = new ArrayList<>(nodes.keySet());
+        return ids.get(Math.floorMod(roomName.hashCode(), ids.size()));
+    }
+
+    /**
+     * @return <code>true</code> if the specified room is owned by this node.
+     */
+    boolean isLocal(String roomName) {
+        return ownerOf(roomName) == nodeId;
+    }
+
+    /**
+     * Starts accepting links from other nodes.
+     */
+    void listen(Selector selector) throws IOException {
+        this.selector = selector;
+        ServerSocketChannel clusterSocketChannel = ServerSocketChannel.open();
+        clusterSocketChannel.configureBlocking(false);
+        clusterSocketChannel.bind(new InetSocketAddress(nodes.get(nodeId).getPort()));
+        clusterSocketChannel.register(selector, SelectionKey.OP_ACCEPT, this);
+        Log.info("Cluster node {} listening on port {}", nodeId, nodes.get(nodeId).getPort());
+    }
+
+    void accept(SelectionKey key) throws IOException {
+        SocketChannel peerChannel = ((ServerSocketChannel) key.channel()).accept();
+        peerChannel.configureBlocking(false);
+        peerChannel.register(selector, SelectionKey.OP_READ,
+                             new ClusterLink(server, this, peerChannel, true));
+    }
+
+    /**
+     * Returns the link to the specified node, opening it if there is none.
+     *
+     * @throws MessageException If the link could not be opened.
+     */
+    ClusterLink linkTo(int otherNodeId) {
+        ClusterLink link = links.get(otherNodeId);
+        if (link != null) {
+            return link;
+        }
+        try {
+            SocketChannel peerChannel = SocketChannel.open();
+            peerChannel.configureBlocking(false);
+            boolean connected = peerChannel.connect(nodes.get(otherNodeId));
+            link = new ClusterLink(server, this, peerChannel, connected);
+            peerChannel.register(selector, connected ? SelectionKey.OP_READ
+                                                     : SelectionKey.OP_CONNECT, link);
+        } catch (IOException ioe) {
+            throw new MessageException("Could not connect to cluster node " + otherNodeId, ioe);
+        }
+        links.put(otherNodeId, link);
+        return link;
+    }
+
+    /**
+     * Handles a message received from another node.
+     */
+    void handle(ClusterLink link, String msg) {
+        try {
+            String[] parts = msg.split("##", 4);
+            switch (MsgType.valueOf(parts[0])) {
+                case SUBSCRIBE:
+                    Room subscribed = server.roomFor(parts[1]);
+                    if (subscribed instanceof LocalRoom) {
+                        ((LocalRoom) subscribed).subscribe(link, Integer.parseInt(parts[2]));
+                    }
+                    break;
+                case FORWARD:
+                    Room room = server.roomFor(parts[1]);
+                    if (!(room instanceof LocalRoom)) {
+                        Log.warn("Request for room {}, which is not owned by this node", parts[1]);
+                        break;
+                    }
+                    long playerId = Long.parseLong(parts[2]);
+                    Message request = new Message(parts[3]);
+                    room.request(link.remotePlayer(playerId, parts[1]), request);
+                    if (request.msgType == MsgType.DISCONNECT) {
+                        link.removeRemotePlayer(playerId);
+                    }
+                    break;
+                case RELAY:
+                    String[] relayParts = msg.split("##", 3);
+                    Room relaying = server.roomFor(relayParts[1]);
+                    if (relaying instanceof RemoteRoom) {
+                        ((RemoteRoom) relaying).relayed(relayParts[2]);
+                    }
+                    break;
+                case UNICAST:
+                    Player player = server.playerById(Long.parseLong(parts[2]));
+                    if (player != null) {
+                        player.reply(parts[3]);
+                    }
+                    break;
+                default:
+                    Log.warn("Unexpected cluster message: {}", msg);
+            }
+        } catch (RuntimeException invalidMsg) {
+            Log.warn("Invalid cluster message: {}", msg, invalidMsg);
+        }
+    }
+
+    /**
+     * Called when a link is closed. Remote rooms will open a new link, and local rooms stop
+     * relaying to the other node.
+     */
+    void linkClosed(ClusterLink link) {
+        links.values().remove(link);
+        for (Room room : server.rooms()) {
+            if (room instanceof RemoteRoom) {
+                ((RemoteRoom) room).linkLost(link);
+            } else if (room instanceof LocalRoom) {
+                ((LocalRoom) room).unsubscribe(link);
+            }
+        }
+    }
+}
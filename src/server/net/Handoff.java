@@ -0,0 +1,150 @@
+package server.net;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import server.model.GameState;
+
+/**
+ * What a server hands over to the server process replacing it: the sessions, and the game and
+ * history of each room played on the server. The replacing process can then let the players
+ * resume their sessions, in the same round, and send them only the broadcasts they missed. The
+ * snapshot file has the format:
+ * <pre>
+ * int  magic, "HMHO"
+ * byte version
+ * long the latest player id
+ * int  number of sessions, followed by, for each session:
+ *      UTF token, long player id, UTF room name, UTF username
+ * int  number of rooms, followed by, for each room:
+ *      UTF name, UTF word, UTF revealed letters, int remaining guesses, int score, int round,
+ *      int guesses in the round, UTF latest delta,
+ *      int number of history entries, UTF each entry, oldest first
+ * </pre>
+ */
+final class Handoff {
+    private static final int MAGIC = 0x484D484F;
+    private static final byte VERSION = 1;
+    private static final Set<PosixFilePermission> OWNER_ONLY =
+        PosixFilePermissions.fromString("rw-------");
+    final long latestPlayerId;
+    final List<Session> sessions;
+    final List<RoomState> rooms;
+
+    Handoff(long latestPlayerId, List<Session> sessions, List<RoomState> rooms) {
+        this.latestPlayerId = latestPlayerId;
+        this.sessions = sessions;
+        this.rooms = rooms;
+    }
+
+    /**
+     * Writes the snapshot to a temporary file, which is then moved to the specified path, so the
+     * replacing process never reads an incomplete snapshot. The snapshot holds the session
+     * tokens, so the file is readable by its owner only, where the file system supports it.
+     */
+    void write(Path path) throws IOException {
+        Path written = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.deleteIfExists(written);
+        if (written.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            Files.createFile(written, PosixFilePermissions.asFileAttribute(OWNER_ONLY));
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+            Files.newOutputStream(written)))) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeLong(latestPlayerId);
+            out.writeInt(sessions.size());
+            for (Session session : sessions) {
+                out.writeUTF(session.getToken());
+                out.writeLong(session.getPlayerId());
+                out.writeUTF(session.getRoomName());
+                out.writeUTF(session.getUsername());
+            }
+            out.writeInt(rooms.size());
+            for (RoomState room : rooms) {
+                room.write(out);
+            }
+        }
+        Files.move(written, path, StandardCopyOption.REPLACE_EXISTING,
+                   StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads a snapshot. The sessions read are detached, and expire if they are not resumed.
+     *
+     * @param now The current time, in milliseconds.
+     */
+    static Handoff read(Path path, long now) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+            Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+                throw new IOException("Not a handoff snapshot: " + path);
+            }
+            long latestPlayerId = in.readLong();
+            List<Session> sessions = new ArrayList<>();
+            for (int i = in.readInt(); i > 0; i--) {
+                Session session = new Session(in.readUTF(), in.readLong(), in.readUTF(), null);
+                session.setUsername(in.readUTF());
+                session.detach(null, now);
+                sessions.add(session);
+            }
+            List<RoomState> rooms = new ArrayList<>();
+            for (int i = in.readInt(); i > 0; i--) {
+                rooms.add(RoomState.read(in));
+            }
+            return new Handoff(latestPlayerId, sessions, rooms);
+        }
+    }
+
+    /**
+     * The game and the history of one room, taken in the room's mailbox.
+     */
+    static final class RoomState {
+        final String name;
+        final GameState state;
+        final String[] history;
+
+        RoomState(String name, GameState state, String[] history) {
+            this.name = name;
+            this.state = state;
+            this.history = history;
+        }
+
+        private void write(DataOutputStream out) throws IOException {
+            out.writeUTF(name);
+            out.writeUTF(state.word());
+            out.writeUTF(state.revealed());
+            out.writeInt(state.remainingGuesses());
+            out.writeInt(state.score());
+            out.writeInt(state.round());
+            out.writeInt(state.seq());
+            out.writeUTF(state.lastDelta());
+            out.writeInt(history.length);
+            for (String entry : history) {
+                out.writeUTF(entry);
+            }
+        }
+
+        private static RoomState read(DataInputStream in) throws IOException {
+            String name = in.readUTF();
+            GameState state = GameState.restore(in.readUTF(), in.readUTF(), in.readInt(),
+                                                in.readInt(), in.readInt(), in.readInt(),
+                                                in.readUTF());
+            String[] history = new String[in.readInt()];
+            for (int i = 0; i < history.length; i++) {
+                history[i] = in.readUTF();
+            }
+            return new RoomState(name, state, history);
+        }
+    }
+}
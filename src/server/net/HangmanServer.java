@@ -1,9 +1,10 @@
 package server.net;
 
 import common.MessageException;
-import common.MessageSplitter;
 import common.MsgType;
+import common.TraceFile;
 import java.io.IOException;
+import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.StandardSocketOptions;
 import java.nio.ByteBuffer;
@@ -11,22 +12,103 @@ import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.List;
 import java.util.Queue;
-import java.util.StringJoiner;
-import java.util.concurrent.ForkJoinPool;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
-import server.controller.Controller;
+import server.capture.CaptureWriter;
+import server.jfr.AcceptEvent;
+import server.jfr.FlushEvent;
+import server.jfr.SelectIterationEvent;
+import server.log.Level;
+import server.log.Log;
+import server.model.Dictionary;
+import server.model.Game;
+import server.model.Solver;
 
-public class HangmanServer implements Runnable {
+public class HangmanServer {
     public static final int LINGER_TIME = 5000;
+    public static final String DEFAULT_ROOM = "main";
+    public static final long SESSION_TTL_MILLIS = 60_000;
+    /**
+     * The most broadcasts written to a spectator with one gathering write.
+     */
+    private static final int SPECTATOR_WRITE_BATCH = 16;
+    /**
+     * The most bytes written to one client before the other clients are served.
+     */
+    private static final int WRITE_BUDGET = 64 * 1024;
+    /**
+     * How often the client that has used the most service time is logged.
+     */
+    private static final long SERVICE_REPORT_MILLIS = 10_000;
+    /**
+     * How long a process taking over waits for the snapshot of the process it replaces.
+     */
+    private static final long TAKEOVER_WAIT_MILLIS = 30_000;
+    private static final long TAKEOVER_POLL_MILLIS = 20;
+    /**
+     * How long a process handing over keeps writing queued messages before it closes the
+     * connections, and how long the JVM is kept from exiting while it does so.
+     */
+    private static final long DRAIN_MILLIS = 2_000;
+    private static final long HANDOFF_TIMEOUT_MILLIS = 10_000;
+    private static final byte[] BROADCAST_PREFIX = (MsgType.BROADCAST + "##").getBytes();
+    private static final byte[] HEADER_END = "###".getBytes();
+    private static final byte[] SEPARATOR = "##".getBytes();
     private int portNo = 8080; // default
-    private final Controller contr = new Controller();
+    private boolean deltaMode = false;
+    private long tickMillis = 0; // broadcast immediately
+    private volatile long tickDeadline = 0;
+    private boolean compressionEnabled = false;
+    private String clusterConfig;
+    private String traceFileName;
+    private TraceFile traceFile;
+    private String captureFileName;
+    private CaptureWriter capture;
+    private int nodeId;
+    private int botCount = 0;
+    private String botRoomName = DEFAULT_ROOM;
+    private String handoffFileName;
+    private boolean takeover = false;
+    private volatile boolean handoffRequested = false;
+    private final CountDownLatch handedOff = new CountDownLatch(1);
+    private ClusterNode cluster;
+    private Dictionary dictionary;
+    private final Map<String, Room> rooms = new ConcurrentHashMap<>();
+    private final Map<Long, PlayerHandler> players = new ConcurrentHashMap<>();
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final AtomicLong nextPlayerId = new AtomicLong();
     private volatile boolean timeToBroadcast = false;
     private Selector selector;
     private ServerSocketChannel listeningSocketChannel;
-    private final Queue<ByteBuffer> messagesToSend = new ArrayDeque<>();
+    private final Queue<Outbound> messagesToSend = new ArrayDeque<>();
+    private final Queue<SelectionKey> keysToWrite = new ArrayDeque<>();
+    private final Queue<SelectionKey> backlogged = new ArrayDeque<>();
+    private long nextServiceReport = System.nanoTime() + SERVICE_REPORT_MILLIS * 1_000_000;
+    private final Set<SelectionKey> clientKeys = new HashSet<>();
+    private final List<SpectatorPort> spectatorPorts = new ArrayList<>();
+    private final ByteBuffer[] spectatorWrites = new ByteBuffer[SPECTATOR_WRITE_BATCH];
+    private final ByteBuffer spectatorInput = ByteBuffer.allocateDirect(1024);
 
     public static void main(String[] args) {
         HangmanServer server = new HangmanServer ();             
@@ -34,37 +116,401 @@ public class HangmanServer implements Runnable {
         server.serve();
     }
         
-    void broadcast(String msg) {
-        contr.appendToHistory(msg);
-        timeToBroadcast = true;
-        ByteBuffer completeMsg = createBroadcastMessage(msg);
+    /**
+     * Queues a message to all players in the specified room. May be called from any thread.
+     *
+     * @param room        The room.
+     * @param completeMsg The message as created by <code>createBroadcastMessage</code>.
+     * @param kind        The kind of the message.
+     * @param trace       The trace of the guess causing this message, or <code>null</code>.
+     */
+    void queueBroadcast(Room room, ByteBuffer completeMsg, SharedFrame.Kind kind, Trace trace) {
+        boolean firstInTick;
+        if (trace != null) {
+            trace.enqueued();
+        }
+        synchronized (messagesToSend) {
+            firstInTick = messagesToSend.isEmpty();
+            messagesToSend.add(new Outbound(room, completeMsg, kind, trace));
+            if (tickMillis > 0 && firstInTick) {
+                tickDeadline = System.nanoTime() + tickMillis * 1_000_000;
+            }
+        }
+        if (tickMillis == 0) {
+            timeToBroadcast = true;
+            selector.wakeup();
+        } else if (firstInTick) {
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * Ends the current tick if its deadline has passed. All messages broadcasted in a room during
+     * the tick are merged into one buffer, which is written to each client in the room with a
+     * single write. The messages keep their length headers, and thereby their order, inside the
+     * merged buffer. The merged buffer is a round message if any of its messages is, and a state
+     * message only if all of them are.
+     */
+    private void endTickIfDue() {
+        long deadline = tickDeadline;
+        if (deadline == 0 || System.nanoTime() < deadline) {
+            return;
+        }
         synchronized (messagesToSend) {
-            messagesToSend.add(completeMsg);
+            if (messagesToSend.size() > 1) {
+                Map<Room, Queue<ByteBuffer>> msgsPerRoom = new LinkedHashMap<>();
+                Map<Room, List<Trace>> tracesPerRoom = new IdentityHashMap<>();
+                Map<Room, SharedFrame.Kind> kindPerRoom = new IdentityHashMap<>();
+                Outbound msg;
+                while ((msg = messagesToSend.poll()) != null) {
+                    msgsPerRoom.computeIfAbsent(msg.room, room -> new ArrayDeque<>()).add(msg.msg);
+                    kindPerRoom.merge(msg.room, msg.kind, HangmanServer::mergedKind);
+                    if (msg.traces != null) {
+                        tracesPerRoom.computeIfAbsent(msg.room, room -> new ArrayList<>())
+                                     .addAll(msg.traces);
+                    }
+                }
+                for (Map.Entry<Room, Queue<ByteBuffer>> roomMsgs : msgsPerRoom.entrySet()) {
+                    messagesToSend.add(new Outbound(roomMsgs.getKey(),
+                                                    mergeMessages(roomMsgs.getValue()),
+                                                    kindPerRoom.get(roomMsgs.getKey()),
+                                                    tracesPerRoom.get(roomMsgs.getKey())));
+                }
+            }
+            tickDeadline = 0;
+        }
+        timeToBroadcast = true;
+    }
+
+    private static SharedFrame.Kind mergedKind(SharedFrame.Kind merged, SharedFrame.Kind next) {
+        if (merged == SharedFrame.Kind.ROUND || next == SharedFrame.Kind.ROUND) {
+            return SharedFrame.Kind.ROUND;
+        }
+        return merged == next ? merged : SharedFrame.Kind.INFO;
+    }
+
+    static ByteBuffer mergeMessages(Queue<ByteBuffer> msgs) {
+        int size = 0;
+        for (ByteBuffer msg : msgs) {
+            size += msg.remaining();
+        }
+        ByteBuffer merged = ByteBuffer.allocate(size);
+        ByteBuffer msg;
+        while ((msg = msgs.poll()) != null) {
+            merged.put(msg.duplicate());
+        }
+        merged.flip();
+        return merged;
+    }
+
+    private void selectUntilNextTick() throws IOException {
+        if (!backlogged.isEmpty()) {
+            selector.selectNow();
+            return;
+        }
+        long deadline = tickDeadline;
+        if (deadline == 0) {
+            selector.select();
+            return;
+        }
+        long millisLeft = (deadline - System.nanoTime()) / 1_000_000;
+        selector.select(Math.max(1, millisLeft));
+    }
+
+    /**
+     * Sends the specified message to one client only. The message is not added to the history.
+     * May be called from any thread.
+     */
+    void unicast(SocketChannel channel, String msg) {
+        SelectionKey key = channel.keyFor(selector);
+        if (key == null || !key.isValid()) {
+            return;
+        }
+        Client client = (Client) key.attachment();
+        client.queueMsgToSend(new SharedFrame(createBroadcastMessage(msg)));
+        requestWrite(channel);
+    }
+
+    /**
+     * Makes the I/O thread write the messages queued for the specified channel. May be called from
+     * any thread.
+     */
+    void requestWrite(SelectableChannel channel) {
+        SelectionKey key = channel.keyFor(selector);
+        if (key == null) {
+            return;
+        }
+        synchronized (keysToWrite) {
+            keysToWrite.add(key);
         }
         selector.wakeup();
     }
 
-    private ByteBuffer createBroadcastMessage(String msg) {
-        StringJoiner joiner = new StringJoiner("##");
-        joiner.add(MsgType.BROADCAST.toString());
-        joiner.add(msg);
-        String messageWithLengthHeader = MessageSplitter.prependLengthHeader(joiner.toString());
+    private void writeOperationForRequestedKeys() {
+        synchronized (keysToWrite) {
+            SelectionKey key;
+            while ((key = keysToWrite.poll()) != null) {
+                if (!key.isValid()) {
+                    continue;
+                }
+                if (key.attachment() instanceof ClusterLink
+                    && !((ClusterLink) key.attachment()).isConnected()) {
+                    continue;
+                }
+                key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+            }
+        }
+    }
+
+    /**
+     * Called when a client has said hello, or has sent its first message without saying hello.
+     * The history is not replayed until then, since the client may ask for compression.
+     *
+     * A client presenting the token of a known session resumes that session. It keeps its player
+     * id, username and room, and gets only the broadcasts it has missed. If those are no longer
+     * kept, it gets a snapshot of the game instead.
+     *
+     * @param handler  The client's handler.
+     * @param compress <code>true</code> if the client wants compressed messages.
+     * @param roomName The room the client wants to join, or <code>null</code> for the default
+     *                 room. Ignored when a session is resumed.
+     * @param token    The token of the session to resume, or <code>null</code>.
+     * @param lastSeq  The sequence number of the last broadcast the client received.
+     * @return The room the client has joined.
+     */
+    Room greet(PlayerHandler handler, boolean compress, String roomName, String token,
+               long lastSeq) {
+        Session session = token == null ? null : sessions.get(token);
+        boolean resumed = session != null;
+        if (resumed) {
+            players.remove(handler.getId(), handler);
+            handler.resume(session);
+            players.put(handler.getId(), handler);
+            session.attach(handler);
+            if (Log.isEnabled(Level.INFO)) {
+                Log.info("Player {} has resumed its session", handler.getId());
+            }
+        } else {
+            session = startSession(handler, isValidRoomName(roomName) ? roomName : DEFAULT_ROOM);
+        }
+        Room room = roomFor(session.getRoomName());
+        SelectionKey key = handler.getChannel().keyFor(selector);
+        if (key == null || !key.isValid()) {
+            return room;
+        }
+        Client client = (Client) key.attachment();
+        client.compress = compress && compressionEnabled;
+        String reply = MsgType.HELLO + "##" + (client.compress ? "deflate" : "none") + "##"
+                       + session.getToken() + "##" + (resumed ? "resumed" : "new");
+        client.queueMsgToSend(new SharedFrame(createBroadcastMessage(reply)));
+        if (resumed) {
+            List<ByteBuffer> missed = room.missedSince(lastSeq);
+            if (missed == null) {
+                room.request(handler, new Message(MsgType.SNAPSHOT.toString()));
+            } else if (!missed.isEmpty()) {
+                client.queueMsgToSend(new SharedFrame(mergeMessages(new ArrayDeque<>(missed))));
+            }
+        } else {
+            SharedFrame history = room.historyFrame();
+            if (history != null) {
+                client.queueMsgToSend(history);
+            }
+        }
+        client.room = room;
+        key.interestOps(SelectionKey.OP_WRITE);
+        selector.wakeup();
+        return room;
+    }
+
+    private Session startSession(PlayerHandler handler, String roomName) {
+        long now = System.currentTimeMillis();
+        sessions.values().removeIf(expired -> expired.hasExpired(now, SESSION_TTL_MILLIS));
+        Session session = new Session(UUID.randomUUID().toString(), handler.getId(), roomName,
+                                      handler);
+        sessions.put(session.getToken(), session);
+        handler.resume(session);
+        return session;
+    }
+
+    /**
+     * Ends a session, after which it can not be resumed. Called when a player quits.
+     */
+    void endSession(Session session) {
+        if (session != null) {
+            sessions.remove(session.getToken());
+        }
+    }
+
+    private boolean isValidRoomName(String roomName) {
+        return roomName != null && !roomName.isEmpty() && !roomName.equals("-")
+               && !roomName.contains("#");
+    }
+
+    /**
+     * Returns the specified room, creating it if it does not exist. A room owned by another
+     * cluster node is created as a remote room, which is subscribed to outside the map's compute
+     * function since that connects to the owning node. Called on the I/O thread.
+     */
+    Room roomFor(String roomName) {
+        Room room = rooms.computeIfAbsent(roomName, name -> {
+            if (cluster == null || cluster.isLocal(name)) {
+                Log.info("Starting room {}", name);
+                return new LocalRoom(this, name);
+            }
+            return new RemoteRoom(this, name, cluster, cluster.ownerOf(name));
+        });
+        if (room instanceof RemoteRoom) {
+            ((RemoteRoom) room).subscribe();
+        }
+        return room;
+    }
+
+    Collection<Room> rooms() {
+        return rooms.values();
+    }
+
+    /**
+     * @return The player with the specified id connected to this server, or <code>null</code>.
+     */
+    Player playerById(long id) {
+        return players.get(id);
+    }
+
+    /**
+     * Records a received message, if recording is on. Called on the I/O thread.
+     *
+     * @param connectionId The id of the connection, which is the first id of its player.
+     * @param msg          The message, without length header.
+     * @param receivedAt   When it was read, from <code>System.nanoTime</code>.
+     */
+    void recordInbound(long connectionId, String msg, long receivedAt) {
+        if (capture != null) {
+            capture.frame(connectionId, msg, receivedAt);
+        }
+    }
+
+    /**
+     * @return The file traced guesses are recorded in, or <code>null</code> if tracing is off.
+     */
+    TraceFile traceFile() {
+        return traceFile;
+    }
+
+    /**
+     * @return <code>true</code> if guesses are broadcasted as deltas of the revealed positions
+     *         instead of the complete masked word.
+     */
+    boolean deltaMode() {
+        return deltaMode;
+    }
+
+    /**
+     * Creates a message that is not part of the history, and therefore has sequence number zero.
+     */
+    static ByteBuffer createBroadcastMessage(String msg) {
+        return createBroadcastMessage(0, msg, null);
+    }
+
+    static ByteBuffer createBroadcastMessage(long seq, String msg) {
+        return createBroadcastMessage(seq, msg, null);
+    }
+
+    /**
+     * Creates a complete message, <code>BROADCAST##seq##msg</code> with a length header. The
+     * header, the prefix and the message are written straight into the returned buffer, which is
+     * the only object created unless the message has to be encoded.
+     *
+     * @param seq        The sequence number of the message in its room's history, or zero.
+     * @param msg        The message.
+     * @param encodedMsg The bytes of the message, which may have been encoded in advance, or
+     *                   <code>null</code> to encode the message while writing it.
+     */
+    static ByteBuffer createBroadcastMessage(long seq, String msg, byte[] encodedMsg) {
+        if (encodedMsg == null && !isAscii(msg)) {
+            encodedMsg = msg.getBytes();
+        }
+        int msgLength = BROADCAST_PREFIX.length + digits(seq) + SEPARATOR.length + msg.length();
+        int encodedLength = encodedMsg == null ? msg.length() : encodedMsg.length;
+        ByteBuffer complete = ByteBuffer.allocate(digits(msgLength) + HEADER_END.length
+                                                  + msgLength - msg.length() + encodedLength);
+        putDigits(complete, msgLength);
+        complete.put(HEADER_END);
+        complete.put(BROADCAST_PREFIX);
+        putDigits(complete, seq);
+        complete.put(SEPARATOR);
+        if (encodedMsg == null) {
+            for (int i = 0; i < msg.length(); i++) {
+                complete.put((byte) msg.charAt(i));
+            }
+        } else {
+            complete.put(encodedMsg);
+        }
+        complete.flip();
+        return complete;
+    }
+
+    private static boolean isAscii(String msg) {
+        for (int i = 0; i < msg.length(); i++) {
+            if (msg.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int digits(long value) {
+        int digits = 1;
+        while (value >= 10) {
+            value /= 10;
+            digits++;
+        }
+        return digits;
+    }
 
-        return ByteBuffer.wrap(messageWithLengthHeader.getBytes());
+    private static void putDigits(ByteBuffer buffer, long value) {
+        int end = buffer.position() + digits(value);
+        for (int i = end - 1; i >= buffer.position(); i--) {
+            buffer.put(i, (byte) ('0' + value % 10));
+            value /= 10;
+        }
+        buffer.position(end);
     }
 
     private void serve() {
         try {
             initSelector();
-            startGame();
+            initDictionary();
+            initTracing();
+            initRecording();
+            initCluster();
             initListeningSocketChannel();
+            takeOver();
+            if (cluster == null || cluster.isLocal(DEFAULT_ROOM)) {
+                roomFor(DEFAULT_ROOM);
+            }
+            initSpectatorPorts();
+            startBots();
+            initHandoff();
             while (true) {
+                if (handoffRequested) {
+                    handOff();
+                    return;
+                }
+                if (tickMillis > 0) {
+                    endTickIfDue();
+                }
+                writeOperationForRequestedKeys();
                 if (timeToBroadcast) {
                     writeOperationForAllActiveClients();
                     appendMsgToAllClientQueues();
                     timeToBroadcast = false;
                 }
-                selector.select();
+                serveBacklogged();
+                reportServiceTime();
+                selectUntilNextTick();
+                SelectIterationEvent iteration = new SelectIterationEvent();
+                iteration.begin();
+                int readyKeys = selector.selectedKeys().size();
                 Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
                 while (iterator.hasNext()) {
                     SelectionKey key = iterator.next();
@@ -72,8 +518,15 @@ public class HangmanServer implements Runnable {
                     if (!key.isValid()) {
                         continue;
                     }
-                    if (key.isAcceptable()) {
-                        Thread.sleep(500);
+                    if (key.attachment() instanceof ClusterNode) {
+                        cluster.accept(key);
+                    } else if (key.attachment() instanceof ClusterLink) {
+                        serveClusterLink(key);
+                    } else if (key.attachment() instanceof SpectatorPort) {
+                        acceptSpectator(key);
+                    } else if (key.attachment() instanceof Spectator) {
+                        serveSpectator(key);
+                    } else if (key.isAcceptable()) {
                         startHandler(key);
                     } else if (key.isReadable()) {
                         recvFromClient(key);
@@ -81,42 +534,405 @@ public class HangmanServer implements Runnable {
                         sendToClient(key);
                     }
                 }
+                if (iteration.shouldCommit()) {
+                    iteration.readyKeys = readyKeys;
+                    iteration.backlogged = backlogged.size();
+                    iteration.commit();
+                }
             }
         } catch (Exception e) {
-            System.err.println("Server failure.");
+            Log.error("Server failure.", e);
         }
     }
 
-    @Override
-    public void run() {
-        contr.selectedWord();
-        broadcast(MsgType.NEWGAME + "##" + contr.showCurrentState() + "##" + contr.remainingGuesses());
+    /**
+     * Loads the dictionary shared by all rooms and bots, once, before anything is served.
+     */
+    private void initDictionary() throws IOException {
+        dictionary = Dictionary.load();
     }
 
-    public void startGame(){
-        ForkJoinPool.commonPool().execute(this);
+    /**
+     * @return The dictionary shared by all rooms.
+     */
+    Dictionary dictionary() {
+        return dictionary;
     }
-    
+
+    private void initTracing() throws IOException {
+        if (traceFileName == null) {
+            return;
+        }
+        traceFile = TraceFile.open(Paths.get(traceFileName), Trace.HEADER);
+        Log.info("Recording traced guesses in {}", traceFileName);
+    }
+
+    private void initRecording() throws IOException {
+        if (captureFileName == null) {
+            return;
+        }
+        Long seed = Long.getLong(Game.SEED_PROPERTY);
+        capture = CaptureWriter.open(Paths.get(captureFileName), seed);
+        Log.info("Recording inbound traffic in {}, seed {}", captureFileName, seed);
+    }
+
+    private void initCluster() throws IOException {
+        if (clusterConfig == null) {
+            return;
+        }
+        cluster = ClusterNode.load(this, Paths.get(clusterConfig), nodeId);
+        cluster.listen(selector);
+    }
+
+    private void serveClusterLink(SelectionKey key) throws IOException {
+        ClusterLink link = (ClusterLink) key.attachment();
+        try {
+            if (key.isConnectable()) {
+                link.finishConnect(key);
+            } else if (key.isReadable()) {
+                link.recvMsg();
+            } else if (key.isWritable()) {
+                link.sendAll(key);
+            }
+        } catch (IOException linkFailure) {
+            Log.warn("Lost link to cluster node", linkFailure);
+            link.close();
+            key.cancel();
+            cluster.linkClosed(link);
+        }
+    }
+
     private void startHandler(SelectionKey key) throws IOException {
+        AcceptEvent accepted = new AcceptEvent();
+        accepted.begin();
         ServerSocketChannel serverSocketChannel = (ServerSocketChannel) key.channel();
         SocketChannel clientChannel = serverSocketChannel.accept();
         clientChannel.configureBlocking(false);
-        PlayerHandler handler = new PlayerHandler(this, clientChannel, contr);
-        clientChannel.register(selector, SelectionKey.OP_WRITE, new Client(handler, contr.
-                                                                           getGameStatus()));
+        PlayerHandler handler = new PlayerHandler(this, clientChannel,
+                                                  nextPlayerId.incrementAndGet());
+        players.put(handler.getId(), handler);
+        clientKeys.add(clientChannel.register(selector, SelectionKey.OP_READ,
+                                              new Client(handler)));
         clientChannel.setOption(StandardSocketOptions.SO_LINGER, LINGER_TIME);
+        if (accepted.shouldCommit()) {
+            accepted.connectionId = handler.getConnectionId();
+            accepted.commit();
+        }
+    }
+
+    /**
+     * Starts the bots, which connect to the listening socket like any client. All bots share one
+     * solver, since indexing the dictionary is expensive.
+     */
+    private void startBots() throws IOException {
+        if (botCount == 0) {
+            return;
+        }
+        Solver solver = new Solver(dictionary);
+        InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), portNo);
+        long thinkMillis = Long.getLong(Bot.THINK_PROPERTY, Bot.DEFAULT_THINK_MILLIS);
+        for (int i = 1; i <= botCount; i++) {
+            Bot.start(new Bot("bot-" + i, botRoomName, address, solver, thinkMillis));
+        }
+        Log.info("Started {} bots in room {}", botCount, botRoomName);
+    }
+
+    private void initSpectatorPorts() throws IOException {
+        for (SpectatorPort spectatorPort : spectatorPorts) {
+            ServerSocketChannel spectatorChannel = ServerSocketChannel.open();
+            spectatorChannel.configureBlocking(false);
+            reusePortIfHandingOff(spectatorChannel);
+            spectatorChannel.bind(new InetSocketAddress(spectatorPort.port));
+            spectatorPort.channel = spectatorChannel;
+            spectatorChannel.register(selector, SelectionKey.OP_ACCEPT, spectatorPort);
+            Log.info("Spectators of room {} on port {}", spectatorPort.roomName,
+                     spectatorPort.port);
+        }
+    }
+
+    /**
+     * Accepts a spectator, which first gets the room's shared history frame and then follows the
+     * room's broadcasts.
+     */
+    private void acceptSpectator(SelectionKey key) throws IOException {
+        SocketChannel spectatorChannel = ((ServerSocketChannel) key.channel()).accept();
+        if (spectatorChannel == null) {
+            return;
+        }
+        spectatorChannel.configureBlocking(false);
+        Room room = roomFor(((SpectatorPort) key.attachment()).roomName);
+        SharedFrame history = room.historyFrame();
+        Spectator spectator = new Spectator(spectatorChannel, room,
+                                            history == null ? null : history.forClient(false),
+                                            room.historyFrameSeq() + 1);
+        spectatorChannel.register(selector, SelectionKey.OP_READ | SelectionKey.OP_WRITE,
+                                  spectator);
+        room.spectators.add(spectator);
+    }
+
+    /**
+     * Writes the broadcasts a spectator has not received. Anything a spectator sends is read into
+     * a buffer shared by all spectators and discarded.
+     */
+    private void serveSpectator(SelectionKey key) throws IOException {
+        Spectator spectator = (Spectator) key.attachment();
+        try {
+            if (key.isReadable()) {
+                spectatorInput.clear();
+                if (spectator.getChannel().read(spectatorInput) == -1) {
+                    throw new IOException("Spectator has closed connection.");
+                }
+            }
+            if (key.isWritable() && spectator.writeAvailable(spectatorWrites)) {
+                key.interestOps(SelectionKey.OP_READ);
+            }
+        } catch (IOException spectatorGone) {
+            spectator.getRoom().spectators.remove(spectator);
+            key.cancel();
+            spectator.getChannel().close();
+        }
+    }
+
+    /**
+     * Makes the spectators of a room write the broadcasts they have not received.
+     */
+    private void wakeSpectators(Room room) {
+        for (Spectator spectator : room.spectators) {
+            SelectionKey key = spectator.getChannel().keyFor(selector);
+            if (key != null && key.isValid()
+                && (key.interestOps() & SelectionKey.OP_WRITE) == 0) {
+                key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            }
+        }
     }
 
     private void parseArguments(String[] arguments) {
-        if (arguments.length > 0) {
-            try {
-                    portNo = Integer.parseInt(arguments[1]);
-            } catch(NumberFormatException e) {
-                    System.err.println("Invalid port number, using default");
+        for (int i = 0; i < arguments.length; i++) {
+            switch (arguments[i]) {
+                case "-delta":
+                    deltaMode = true;
+                    break;
+                case "-compress":
+                    compressionEnabled = true;
+                    break;
+                case "-cluster":
+                    clusterConfig = arguments[++i];
+                    break;
+                case "-record":
+                    captureFileName = arguments[++i];
+                    break;
+                case "-trace":
+                    traceFileName = arguments[++i];
+                    break;
+                case "-spectate":
+                    try {
+                        spectatorPorts.add(SpectatorPort.parse(arguments[++i]));
+                    } catch(NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                        Log.warn("Invalid spectator port, use -spectate port[:room]");
+                    }
+                    break;
+                case "-bots":
+                    try {
+                        String[] bots = arguments[++i].split(":", 2);
+                        botCount = Integer.parseInt(bots[0]);
+                        if (bots.length > 1 && isValidRoomName(bots[1])) {
+                            botRoomName = bots[1];
+                        }
+                    } catch(NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                        Log.warn("Invalid bot count, use -bots count[:room]");
+                    }
+                    break;
+                case "-node":
+                    try {
+                        nodeId = Integer.parseInt(arguments[++i]);
+                    } catch(NumberFormatException e) {
+                        Log.warn("Invalid node id, using {}", nodeId);
+                    }
+                    break;
+                case "-handoff":
+                    handoffFileName = arguments[++i];
+                    break;
+                case "-takeover":
+                    handoffFileName = arguments[++i];
+                    takeover = true;
+                    break;
+                case "-tick":
+                    try {
+                        tickMillis = Long.parseLong(arguments[++i]);
+                    } catch(NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                        Log.warn("Invalid tick interval, broadcasting immediately");
+                    }
+                    break;
+                default:
+                    if (i + 1 < arguments.length) {
+                        try {
+                            portNo = Integer.parseInt(arguments[++i]);
+                        } catch(NumberFormatException e) {
+                            Log.warn("Invalid port number, using default");
+                        }
+                    }
             }
         }
     } 
     
+    /**
+     * Lets the process taking over from this one, or the process this one takes over from, listen
+     * on the same ports while the games are handed over.
+     */
+    private void reusePortIfHandingOff(ServerSocketChannel channel) throws IOException {
+        if (handoffFileName == null) {
+            return;
+        }
+        if (channel.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT)) {
+            channel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+        } else {
+            Log.warn("Ports can not be shared, a process taking over must wait for this one");
+        }
+    }
+
+    /**
+     * Continues the games handed over by the process this one replaces, if there is a snapshot.
+     * When started with <code>-takeover</code>, waits for that process to write the snapshot. The
+     * listening socket is already bound, so clients connecting meanwhile wait in its backlog.
+     * The snapshot is deleted once the games are restored, so it is only taken over once. It is
+     * kept if they could not be restored.
+     */
+    private void takeOver() throws IOException, InterruptedException {
+        if (handoffFileName == null) {
+            return;
+        }
+        Path snapshot = Paths.get(handoffFileName);
+        long deadline = System.currentTimeMillis() + TAKEOVER_WAIT_MILLIS;
+        while (takeover && !Files.exists(snapshot) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(TAKEOVER_POLL_MILLIS);
+        }
+        if (!Files.exists(snapshot)) {
+            if (takeover) {
+                Log.warn("Nothing was handed over in {}, starting new games", handoffFileName);
+            }
+            return;
+        }
+        Handoff handoff = Handoff.read(snapshot, System.currentTimeMillis());
+        nextPlayerId.set(handoff.latestPlayerId);
+        for (Session session : handoff.sessions) {
+            sessions.put(session.getToken(), session);
+        }
+        for (Handoff.RoomState room : handoff.rooms) {
+            if (cluster == null || cluster.isLocal(room.name)) {
+                rooms.put(room.name, new LocalRoom(this, room));
+            }
+        }
+        Files.delete(snapshot);
+        Log.info("Took over {} rooms and {} sessions from {}", handoff.rooms.size(),
+                 handoff.sessions.size(), handoffFileName);
+    }
+
+    /**
+     * Makes the server hand over its games when the JVM is shut down, for example by a
+     * <code>SIGTERM</code> when a new process has been started with <code>-takeover</code>. The
+     * handoff runs before the log is stopped, so what it logs, failures included, is written.
+     */
+    private void initHandoff() {
+        if (handoffFileName == null) {
+            return;
+        }
+        Log.beforeShutdown(this::requestHandoff);
+    }
+
+    /**
+     * Makes the I/O thread hand over the games, and waits until it has. Called by the log's
+     * shutdown hook.
+     */
+    private void requestHandoff() {
+        handoffRequested = true;
+        selector.wakeup();
+        try {
+            if (!handedOff.await(HANDOFF_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                Log.warn("The games were not handed over in time");
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Hands the games over to the process replacing this one. New connections are no longer
+     * accepted, and the state of each local room is taken in its mailbox and written to the
+     * snapshot. What was broadcasted before is then written to the clients, whose connections
+     * are closed. The clients reconnect to the replacing process, resume their sessions and get
+     * the broadcasts they missed. Called on the I/O thread, which serves nothing afterwards.
+     */
+    private void handOff() {
+        try {
+            listeningSocketChannel.close();
+            for (SpectatorPort spectatorPort : spectatorPorts) {
+                if (spectatorPort.channel != null) {
+                    spectatorPort.channel.close();
+                }
+            }
+            selector.selectNow();
+            selector.selectedKeys().clear();
+            List<CompletableFuture<Handoff.RoomState>> taken = new ArrayList<>();
+            for (Room room : rooms.values()) {
+                if (room instanceof LocalRoom) {
+                    taken.add(((LocalRoom) room).handOff());
+                }
+            }
+            List<Handoff.RoomState> roomStates = new ArrayList<>();
+            for (CompletableFuture<Handoff.RoomState> roomState : taken) {
+                roomStates.add(roomState.join());
+            }
+            new Handoff(nextPlayerId.get(), new ArrayList<>(sessions.values()), roomStates)
+                .write(Paths.get(handoffFileName));
+            Log.info("Handed over {} rooms in {}", roomStates.size(), handoffFileName);
+            drainClients();
+        } catch (IOException | RuntimeException e) {
+            Log.error("Could not hand over the games", e);
+        } finally {
+            handedOff.countDown();
+        }
+    }
+
+    /**
+     * Writes what is queued for the clients, for at most <code>DRAIN_MILLIS</code>, and then
+     * closes their connections. Nothing is read.
+     */
+    private void drainClients() throws IOException {
+        for (SelectionKey key : selector.keys()) {
+            if (key.isValid() && !(key.attachment() instanceof Client)) {
+                key.interestOps(0);
+            }
+        }
+        appendMsgToAllClientQueues();
+        writeOperationForAllActiveClients();
+        long deadline = System.nanoTime() + DRAIN_MILLIS * 1_000_000;
+        while (hasQueuedMessages() && System.nanoTime() < deadline) {
+            selector.select(Math.max(1, (deadline - System.nanoTime()) / 1_000_000));
+            for (SelectionKey key : selector.selectedKeys()) {
+                if (key.isValid() && key.attachment() instanceof Client && key.isWritable()) {
+                    sendToClient(key);
+                }
+                if (key.isValid() && (key.interestOps() & SelectionKey.OP_WRITE) == 0) {
+                    key.interestOps(0);
+                }
+            }
+            selector.selectedKeys().clear();
+        }
+        for (SelectionKey key : clientKeys) {
+            key.channel().close();
+        }
+        Log.info("Closed {} connections", clientKeys.size());
+    }
+
+    private boolean hasQueuedMessages() {
+        for (SelectionKey key : clientKeys) {
+            if (key.isValid() && ((Client) key.attachment()).queueDepth() > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private void initSelector() throws IOException {
         selector = Selector.open();
     }
@@ -124,87 +940,403 @@ public class HangmanServer implements Runnable {
     private void initListeningSocketChannel() throws IOException {
         listeningSocketChannel = ServerSocketChannel.open();
         listeningSocketChannel.configureBlocking(false);
+        reusePortIfHandingOff(listeningSocketChannel);
         listeningSocketChannel.bind(new InetSocketAddress(portNo));
         listeningSocketChannel.register(selector, SelectionKey.OP_ACCEPT);
     }
     
     private void writeOperationForAllActiveClients() {
-        for (SelectionKey key : selector.keys()) {
-            if (key.channel() instanceof SocketChannel && key.isValid()) {
+        Iterator<SelectionKey> keys = clientKeys.iterator();
+        while (keys.hasNext()) {
+            SelectionKey key = keys.next();
+            if (key.isValid()) {
                 key.interestOps(SelectionKey.OP_WRITE);
+            } else {
+                keys.remove();
             }
         }
     }
 
     private void appendMsgToAllClientQueues() {
         synchronized (messagesToSend) {
-            ByteBuffer msgToSend;
+            Outbound msgToSend;
             while ((msgToSend = messagesToSend.poll()) != null) {
-                for (SelectionKey key : selector.keys()) {
+                SharedFrame frame = new SharedFrame(msgToSend.msg, msgToSend.kind);
+                int recipients = 0;
+                for (SelectionKey key : clientKeys) {
                     Client client = (Client) key.attachment();
-                    if (client == null) {
+                    if (client.room != msgToSend.room) {
                         continue;
                     }
-                    synchronized (client.messagesToSend) {
-                        client.queueMsgToSend(msgToSend);
-
+                    client.queueMsgToSend(frame, msgToSend.traces);
+                    recipients++;
+                }
+                if (msgToSend.traces != null) {
+                    for (Trace trace : msgToSend.traces) {
+                        trace.fannedOut(recipients);
                     }
                 }
+                wakeSpectators(msgToSend.room);
             }
         }
     }
     
+    /**
+     * Reads from a client and handles what it sent, within the client's budgets. A client with
+     * messages left when the frame budget is used is backlogged, and is not read from until the
+     * backlog is handled.
+     */
     private void recvFromClient(SelectionKey key) throws IOException {
         Client client = (Client) key.attachment();
+        if (client.backlogged) {
+            return;
+        }
+        long startedAt = System.nanoTime();
         try {
             client.handler.recvMsg();
+            backlogIfNeeded(key, client);
         } catch (IOException clientHasClosedConnection) {
             removeClient(key);
+        } catch (MessageException couldNotHandleRequest) {
+            Log.warn("Could not handle request", couldNotHandleRequest);
+        }
+        client.served(System.nanoTime() - startedAt);
+    }
+
+    /**
+     * Handles one frame budget of messages for each backlogged client, in round-robin order.
+     * Clients that still have a backlog are served again in the next iteration.
+     */
+    private void serveBacklogged() throws IOException {
+        for (int i = backlogged.size(); i > 0; i--) {
+            SelectionKey key = backlogged.poll();
+            Client client = (Client) key.attachment();
+            client.backlogged = false;
+            if (!key.isValid()) {
+                continue;
+            }
+            long startedAt = System.nanoTime();
+            try {
+                client.handler.handlePlayerRequest();
+                backlogIfNeeded(key, client);
+            } catch (MessageException couldNotHandleRequest) {
+                Log.warn("Could not handle request", couldNotHandleRequest);
+            }
+            client.served(System.nanoTime() - startedAt);
+        }
+    }
+
+    private void backlogIfNeeded(SelectionKey key, Client client) {
+        if (client.handler.hasBacklog() && key.isValid() && !client.backlogged) {
+            client.backlogged = true;
+            backlogged.add(key);
         }
     }
 
     private void sendToClient(SelectionKey key) throws IOException {
         Client client = (Client) key.attachment();
+        FlushEvent flush = new FlushEvent();
+        flush.begin();
+        long startedAt = System.nanoTime();
+        long writtenBefore = client.bytesWritten;
         try {
-            client.sendAll();
-            key.interestOps(SelectionKey.OP_READ);
+            if (client.sendAll()) {
+                key.interestOps(SelectionKey.OP_READ);
+            }
         } catch (MessageException couldNotSendAllMessages) {
         } catch (IOException clientHasClosedConnection) {
             removeClient(key);
         }
+        client.served(System.nanoTime() - startedAt);
+        if (flush.shouldCommit()) {
+            flush.connectionId = client.handler.getConnectionId();
+            flush.bytes = client.bytesWritten - writtenBefore;
+            flush.queueDepth = client.queueDepth();
+            flush.commit();
+        }
+    }
+
+    /**
+     * Logs the client that has used the most service time since the last report, so that a client
+     * starving the others can be found.
+     */
+    private void reportServiceTime() {
+        long now = System.nanoTime();
+        if (now < nextServiceReport) {
+            return;
+        }
+        nextServiceReport = now + SERVICE_REPORT_MILLIS * 1_000_000;
+        Client busiest = null;
+        long total = 0;
+        for (SelectionKey key : clientKeys) {
+            Client client = (Client) key.attachment();
+            total += client.intervalNanos;
+            if (busiest == null || client.intervalNanos > busiest.intervalNanos) {
+                busiest = client;
+            }
+        }
+        if (busiest != null && busiest.intervalNanos > 0 && Log.isEnabled(Level.INFO)) {
+            Log.info("Player {} used the most service time, {} us of {} us",
+                     busiest.handler.getId(), busiest.intervalNanos / 1000, total / 1000);
+        }
+        for (SelectionKey key : clientKeys) {
+            ((Client) key.attachment()).intervalNanos = 0;
+        }
     }
     
+    /**
+     * Closes the connection of a player who has quit, and forgets the player, like a connection
+     * closed by the client. Called on the I/O thread.
+     */
+    void disconnect(PlayerHandler handler) throws IOException {
+        SelectionKey key = handler.getChannel().keyFor(selector);
+        if (key == null) {
+            handler.disconnectClient();
+            return;
+        }
+        removeClient(key);
+    }
+
     private void removeClient(SelectionKey clientKey) throws IOException {
         Client client = (Client) clientKey.attachment();
         client.handler.disconnectClient();
+        client.handler.detach(System.currentTimeMillis());
+        if (capture != null) {
+            capture.closed(client.handler.getConnectionId());
+        }
+        client.abandonTraces();
+        players.remove(client.handler.getId(), client.handler);
+        clientKeys.remove(clientKey);
         clientKey.cancel();
+        if (Log.isEnabled(Level.DEBUG)) {
+            Log.debug("Player {} used {} us of service time", client.handler.getId(),
+                      client.serviceNanos / 1000);
+        }
     }
     
+    /**
+     * A connected player. Its outbound messages are queued in two lanes, and the urgent lane is
+     * sent before the ordinary lane. Control messages are always urgent. A client that keeps up
+     * gets all broadcasts in order, in the ordinary lane. A client that is behind, because its
+     * latest write did not complete, gets round messages in the urgent lane, together with the
+     * informational messages queued before them, in order. The queued state messages are then
+     * dropped, since they are superseded by the round message. A state message queued for a
+     * client that is behind also replaces the state message queued just before it. A message
+     * that has been partly written is always completed first.
+     *
+     * Round messages are never sent before the informational messages queued earlier, to a
+     * client that is behind or not, since the client drops broadcasts with a lower sequence
+     * number than one it has received. Only the state messages they supersede are skipped.
+     * Sending round messages first would require sequence numbers per lane.
+     */
     private class Client {
         private final PlayerHandler handler;
-        private final Queue<ByteBuffer> messagesToSend = new ArrayDeque<>();
+        private final Queue<ByteBuffer> urgent = new ArrayDeque<>();
+        private final Queue<Queued> ordinary = new ArrayDeque<>();
+        private final Map<ByteBuffer, List<Trace>> traced = new IdentityHashMap<>();
+        private Queued queuedState;
+        private ByteBuffer inFlight;
+        private boolean behind = false;
+        private long bytesWritten = 0;
+        private Room room;
+        private boolean compress = false;
+        private boolean backlogged = false;
+        private long serviceNanos = 0;
+        private long intervalNanos = 0;
 
-        private Client(PlayerHandler handler, String[] history) {
+        private Client(PlayerHandler handler) {
             this.handler = handler;
-            for (String entry : history) {
-                messagesToSend.add(createBroadcastMessage(entry));
+        }
+
+        /**
+         * Adds to the time spent reading, handling and writing for this client.
+         */
+        private void served(long nanos) {
+            serviceNanos += nanos;
+            intervalNanos += nanos;
+        }
+
+        private void queueMsgToSend(SharedFrame msg) {
+            queueMsgToSend(msg, null);
+        }
+
+        /**
+         * Queues a message in the lane of its kind, dropping the state messages it supersedes if
+         * this client is behind.
+         *
+         * @param traces The traces of the guesses causing the message, or <code>null</code>.
+         */
+        private synchronized void queueMsgToSend(SharedFrame msg, List<Trace> traces) {
+            ByteBuffer queued = msg.forClient(compress);
+            if (traces != null) {
+                traced.put(queued, traces);
             }
+            if (msg.kind() == SharedFrame.Kind.CONTROL) {
+                urgent.add(queued);
+                return;
+            }
+            if (behind && msg.kind() == SharedFrame.Kind.ROUND) {
+                Queued earlier;
+                while ((earlier = ordinary.poll()) != null) {
+                    if (earlier.kind == SharedFrame.Kind.STATE) {
+                        dropped(earlier.msg);
+                    } else {
+                        urgent.add(earlier.msg);
+                    }
+                }
+                queuedState = null;
+                urgent.add(queued);
+                return;
+            }
+            if (behind && msg.kind() == SharedFrame.Kind.STATE && queuedState != null) {
+                dropped(queuedState.msg);
+                queuedState.msg = queued;
+                return;
+            }
+            Queued entry = new Queued(queued, msg.kind());
+            queuedState = msg.kind() == SharedFrame.Kind.STATE ? entry : null;
+            ordinary.add(entry);
         }
 
-        private void queueMsgToSend(ByteBuffer msg) {
-            synchronized (messagesToSend) {
-                messagesToSend.add(msg.duplicate());
+        /**
+         * Writes queued messages until the write budget is used.
+         *
+         * @return <code>true</code> if all queued messages were written.
+         */
+        private synchronized boolean sendAll() throws IOException, MessageException {
+            behind = true;
+            int written = 0;
+            while (inFlight != null || (inFlight = nextToSend()) != null) {
+                if (written >= WRITE_BUDGET) {
+                    return false;
+                }
+                int remaining = inFlight.remaining();
+                written += remaining;
+                try {
+                    handler.sendMsg(inFlight);
+                } finally {
+                    bytesWritten += remaining - inFlight.remaining();
+                }
+                ByteBuffer sent = inFlight;
+                inFlight = null;
+                if (!traced.isEmpty()) {
+                    flushed(traced.remove(sent));
+                }
             }
+            behind = false;
+            return true;
         }
 
-        private void sendAll() throws IOException, MessageException {
-            ByteBuffer msg = null;
-            synchronized (messagesToSend) {
-                while ((msg = messagesToSend.peek()) != null) {
-                    handler.sendMsg(msg);
-                    messagesToSend.remove();
+        /**
+         * @return The number of messages queued and not yet completely written.
+         */
+        private synchronized int queueDepth() {
+            return urgent.size() + ordinary.size() + (inFlight == null ? 0 : 1);
+        }
+
+        private ByteBuffer nextToSend() {
+            ByteBuffer next = urgent.poll();
+            if (next != null) {
+                return next;
+            }
+            Queued queued = ordinary.poll();
+            if (queued == null) {
+                return null;
+            }
+            if (queued == queuedState) {
+                queuedState = null;
+            }
+            return queued.msg;
+        }
+
+        /**
+         * A dropped message counts as flushed in its traces, since the client gets a newer
+         * message instead.
+         */
+        private void dropped(ByteBuffer msg) {
+            if (!traced.isEmpty()) {
+                flushed(traced.remove(msg));
+            }
+        }
+
+        /**
+         * Called when the client is removed, so that the traces of messages that will never be
+         * written to it are recorded without it.
+         */
+        private synchronized void abandonTraces() {
+            for (List<Trace> traces : traced.values()) {
+                for (Trace trace : traces) {
+                    trace.abandoned();
+                }
+            }
+            traced.clear();
+        }
+
+        private void flushed(List<Trace> traces) {
+            if (traces != null) {
+                for (Trace trace : traces) {
+                    trace.flushed();
                 }
             }
         }
     }
+
+    /**
+     * A message in a client's ordinary lane. The message of a state entry is replaced when a
+     * newer state message supersedes it.
+     */
+    private static class Queued {
+        private ByteBuffer msg;
+        private final SharedFrame.Kind kind;
+
+        private Queued(ByteBuffer msg, SharedFrame.Kind kind) {
+            this.msg = msg;
+            this.kind = kind;
+        }
+    }
+
+    /**
+     * A port where spectators of a room connect.
+     */
+    private static class SpectatorPort {
+        private final int port;
+        private final String roomName;
+        private ServerSocketChannel channel;
+
+        private SpectatorPort(int port, String roomName) {
+            this.port = port;
+            this.roomName = roomName;
+        }
+
+        /**
+         * @param spec <code>port</code> or <code>port:room</code>, the default room is used if
+         *             none is specified.
+         */
+        private static SpectatorPort parse(String spec) {
+            int separator = spec.indexOf(':');
+            if (separator < 0) {
+                return new SpectatorPort(Integer.parseInt(spec), DEFAULT_ROOM);
+            }
+            return new SpectatorPort(Integer.parseInt(spec.substring(0, separator)),
+                                     spec.substring(separator + 1));
+        }
+    }
+
+    private static class Outbound {
+        private final Room room;
+        private final ByteBuffer msg;
+        private final SharedFrame.Kind kind;
+        private final List<Trace> traces;
+
+        private Outbound(Room room, ByteBuffer msg, SharedFrame.Kind kind, Trace trace) {
+            this(room, msg, kind, trace == null ? null : Collections.singletonList(trace));
+        }
+
+        private Outbound(Room room, ByteBuffer msg, SharedFrame.Kind kind, List<Trace> traces) {
+            this.room = room;
+            this.msg = msg;
+            this.kind = kind;
+            this.traces = traces;
+        }
+    }
 }
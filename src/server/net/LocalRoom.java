@@ -0,0 +1,240 @@
+package server.net;
+
+import common.MsgType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.concurrent.CompletableFuture;
+import server.controller.Controller;
+import server.log.Level;
+import server.log.Log;
+import server.model.GameState;
+
+/**
+ * A room whose game is played on this server. All requests are executed in the game's mailbox,
+ * and so are all broadcasts. Other cluster nodes with players in this room subscribe to its
+ * broadcasts.
+ */
+class LocalRoom extends Room {
+    private final Controller contr;
+    private final RoundPipeline rounds;
+    private final List<ClusterLink> subscribers = new ArrayList<>();
+    /**
+     * Where broadcasts caused by guesses are built. Only used in the game's mailbox.
+     */
+    private final StringBuilder outgoing = new StringBuilder(128);
+    /**
+     * Set when the room has been handed over to another server process, after which nothing more
+     * is broadcasted. Only used in the game's mailbox.
+     */
+    private boolean handedOff = false;
+
+    /**
+     * Creates the room and starts its first round.
+     */
+    LocalRoom(HangmanServer server, String name) {
+        super(server, name);
+        contr = new Controller(server.dictionary());
+        rounds = new RoundPipeline(this, contr);
+        contr.execute(rounds::rollover);
+    }
+
+    /**
+     * Creates a room continuing the game of a room handed over by another server process, in the
+     * same round.
+     */
+    LocalRoom(HangmanServer server, Handoff.RoomState restored) {
+        super(server, restored.name);
+        contr = new Controller(server.dictionary());
+        contr.restore(restored.state, restored.history);
+        recordHistory(restored.history);
+        rounds = new RoundPipeline(this, contr);
+    }
+
+    /**
+     * Takes the state of the room, to hand it over to another server process. The state is taken
+     * in the game's mailbox, after all requests passed to the room before. Nothing is broadcasted
+     * after that, so the clients do not receive anything that is not in the handed over history.
+     *
+     * @return The state, once it has been taken.
+     */
+    CompletableFuture<Handoff.RoomState> handOff() {
+        CompletableFuture<Handoff.RoomState> state = new CompletableFuture<>();
+        contr.execute(() -> {
+            handedOff = true;
+            state.complete(new Handoff.RoomState(getName(), contr.currentState(), history()));
+        });
+        return state;
+    }
+
+    @Override
+    void request(Player player, Message msg) {
+        contr.execute(() -> playerRequest(player, msg));
+    }
+
+    @Override
+    String[] history() {
+        return contr.getGameStatus();
+    }
+
+    /**
+     * Adds a message to the history and sends it to all players in the room. Must be called in
+     * the game's mailbox.
+     */
+    void broadcast(String msg) {
+        broadcast(msg, null, null);
+    }
+
+    void broadcast(String msg, byte[] encodedMsg) {
+        broadcast(msg, encodedMsg, null);
+    }
+
+    /**
+     * Broadcasts a message that is already encoded. Must be called in the game's mailbox.
+     *
+     * @param msg        The message, which is added to the history.
+     * @param encodedMsg The bytes of the message, or <code>null</code> to encode it when the
+     *                   broadcast is created.
+     * @param trace      The trace of the guess causing this broadcast, or <code>null</code>.
+     */
+    void broadcast(String msg, byte[] encodedMsg, Trace trace) {
+        if (handedOff) {
+            return;
+        }
+        int seq = contr.appendToHistory(msg);
+        server.queueBroadcast(this, recordBroadcast(seq, msg, encodedMsg),
+                              SharedFrame.Kind.of(msg), trace);
+        for (ClusterLink subscriber : subscribers) {
+            subscriber.send(MsgType.RELAY + "##" + getName() + "##" + msg);
+        }
+    }
+
+    /**
+     * Starts relaying broadcasts to another cluster node. The history entries that node does not
+     * already have are relayed first.
+     *
+     * @param link  The link to the subscribing node.
+     * @param known The number of history entries the subscribing node already has.
+     */
+    void subscribe(ClusterLink link, int known) {
+        contr.execute(() -> {
+            String[] history = history();
+            for (int i = known; i < history.length; i++) {
+                link.send(MsgType.RELAY + "##" + getName() + "##" + history[i]);
+            }
+            if (!subscribers.contains(link)) {
+                subscribers.add(link);
+            }
+        });
+    }
+
+    /**
+     * Stops relaying broadcasts to a cluster node.
+     */
+    void unsubscribe(ClusterLink link) {
+        contr.execute(() -> subscribers.remove(link));
+    }
+
+    private void playerRequest(Player player, Message msg) {
+        if (msg.msgType == null) {
+            Log.warn("Command: {} is not known.", msg.receivedString);
+            return;
+        }
+        switch(msg.msgType) {
+            case USER:
+                if (msg.msgBody == null || msg.msgBody.trim().isEmpty()) {
+                    if (Log.isEnabled(Level.WARN)) {
+                        Log.warn("Player {} sent an empty username", player.getId());
+                    }
+                    break;
+                }
+                player.setUsername(msg.msgBody);
+                broadcast(msg.msgType + "##" + player.getUsername());
+                break;
+
+            case GUESS:
+                String guess = msg.msgBody == null ? "" : msg.msgBody;
+                if (guess.isEmpty() || !contr.isValidGuess(guess)) {
+                    player.reply(MsgType.INVALID + "##" + guess);
+                    break;
+                }
+                GameState state = contr.playGame(guess);
+                if (state == null) {
+                    Log.debug("Round is over, ignoring {}", guess);
+                    break;
+                }
+                if (msg.trace != null) {
+                    msg.trace.evaluated();
+                }
+                String correlationId = msg.correlationId();
+                boolean right = state.correctWord();
+                int remainingGuessses = state.remainingGuesses();
+
+                outgoing.setLength(0);
+                if (server.deltaMode()) {
+                    outgoing.append(MsgType.DELTA).append("##");
+                    appendDelta(player, guess, state);
+                } else {
+                    outgoing.append(MsgType.GUESS).append("##");
+                    appendGuess(player, guess, state);
+                }
+                if (correlationId != null) {
+                    outgoing.append("##").append(correlationId);
+                }
+                broadcast(outgoing.toString(), null, msg.trace);
+                if(remainingGuessses == 0 || right) {
+                    outgoing.setLength(0);
+                    outgoing.append(MsgType.ENDGAME).append("##");
+                    appendGuess(player, guess, state);
+                    outgoing.append("##").append(state.score());
+                    if (remainingGuessses == 0) {
+                        outgoing.append("##lose##").append(state.word());
+                    } else {
+                        outgoing.append("##win");
+                    }
+                    broadcast(outgoing.toString());
+                    rounds.rollover();
+                }
+                Log.debug("{} guessed {}", player.getUsername(), guess);
+                break;
+
+            case SNAPSHOT:
+                GameState current = contr.currentState();
+                StringJoiner snapshot = new StringJoiner("##");
+                snapshot.add(MsgType.SNAPSHOT.toString());
+                snapshot.add(Integer.toString(current.round()));
+                snapshot.add(Integer.toString(current.seq()));
+                snapshot.add(current.showCurrentState());
+                snapshot.add(Integer.toString(current.remainingGuesses()));
+                player.reply(snapshot.toString());
+                break;
+
+            case DISCONNECT:
+                broadcast(msg.msgType + "##" + player.getUsername());
+                break;
+
+            default:
+                Log.warn("Command: {} is not known.", msg.receivedString);
+        }
+    }
+
+    /**
+     * Appends the body of a guess message, <code>user##guess##state##remaining</code>.
+     */
+    private void appendGuess(Player player, String guess, GameState state) {
+        outgoing.append(player.getUsername()).append("##").append(guess).append("##");
+        state.appendCurrentState(outgoing);
+        outgoing.append("##").append(state.remainingGuesses());
+    }
+
+    /**
+     * Appends the body of a delta message, which contains only the positions revealed by the
+     * latest guess. Clients rebuild the masked word from the previous state.
+     */
+    private void appendDelta(Player player, String guess, GameState state) {
+        outgoing.append(player.getUsername()).append("##").append(guess);
+        outgoing.append("##").append(state.round()).append("##").append(state.seq());
+        outgoing.append("##").append(state.lastDelta());
+        outgoing.append("##").append(state.remainingGuesses());
+    }
+}
@@ -0,0 +1,89 @@
+package server.net;
+
+import common.MsgType;
+import server.log.Log;
+
+/**
+ * A message received from a player, with its type and parameters. The message is not split
+ * up front. The type is resolved in place, the body is the only parameter extracted when the
+ * message is created, and other parameters are found when asked for.
+ */
+class Message {
+    private static final String SEPARATOR = "##";
+    final String receivedString;
+    MsgType msgType;
+    String msgBody;
+    Trace trace;
+
+    Message(String receivedString) {
+        this.receivedString = receivedString;
+        parse(receivedString);
+    }
+
+    /**
+     * @param index The index of the parameter, the type has index zero and the body index one.
+     * @return The parameter with the specified index, or <code>null</code> if there is none or it
+     *         is empty.
+     */
+    String arg(int index) {
+        int start = fieldStart(index);
+        if (start < 0) {
+            return null;
+        }
+        int end = fieldEnd(start);
+        return end == start ? null : receivedString.substring(start, end);
+    }
+
+    /**
+     * A client may add a correlation id to a guess, which is then added to the resulting
+     * broadcast.
+     *
+     * @return The correlation id, or <code>null</code> if there is none or it is not valid.
+     */
+    String correlationId() {
+        int start = msgType == MsgType.GUESS ? fieldStart(2) : -1;
+        if (start < 0) {
+            return null;
+        }
+        int end = fieldEnd(start);
+        if (end == start || end - start > 32) {
+            return null;
+        }
+        for (int i = start; i < end; i++) {
+            char c = receivedString.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '-') {
+                return null;
+            }
+        }
+        return receivedString.substring(start, end);
+    }
+
+    private void parse(String strToParse) {
+        msgType = MsgType.resolve(strToParse, 0, fieldEnd(0));
+        if (msgType == null) {
+            Log.warn("Could not parse message: {}", strToParse);
+        }
+        msgBody = arg(1);
+    }
+
+    /**
+     * @return The index of the first character of the specified parameter, or -1 if there is no
+     *         such parameter.
+     */
+    private int fieldStart(int index) {
+        int start = 0;
+        for (int i = 0; i < index; i++) {
+            int separator = receivedString.indexOf(SEPARATOR, start);
+            if (separator < 0) {
+                return -1;
+            }
+            start = separator + SEPARATOR.length();
+        }
+        return start;
+    }
+
+    private int fieldEnd(int start) {
+        int separator = receivedString.indexOf(SEPARATOR, start);
+        return separator < 0 ? receivedString.length() : separator;
+    }
+}
@@ -0,0 +1,21 @@
+package server.net;
+
+/**
+ * A player in a room. The player is either connected to this server, or to another node in the
+ * cluster that forwards the player's requests.
+ */
+interface Player {
+    /**
+     * @return An id that is unique among the players connected to the same node.
+     */
+    long getId();
+
+    String getUsername();
+
+    void setUsername(String username);
+
+    /**
+     * Sends a message to this player only. May be called from any thread.
+     */
+    void reply(String msg);
+}
@@ -2,142 +2,213 @@ package server.net;
 
 import common.MessageException;
 import common.MessageSplitter;
+import common.ReceiveBuffer;
 import java.io.IOException;
-import java.util.StringJoiner;
 
 import common.MsgType;
+import common.TraceFile;
 import java.nio.ByteBuffer;
 import java.nio.channels.SocketChannel;
-import server.controller.Controller;
+import server.jfr.CommandEvent;
+import server.jfr.DecodeEvent;
+import server.log.Level;
+import server.log.Log;
 
 
 /**
  *
  * @author yuchen
  */
-public class PlayerHandler {
+public class PlayerHandler implements Player {
+    /**
+     * The most bytes read from one client before the other clients are served.
+     */
+    static final int RECEIVE_BUDGET = 64 * 1024;
+    /**
+     * The most messages handled for one client before the other clients are served.
+     */
+    static final int FRAME_BUDGET = 16;
     private final HangmanServer server;
     private final SocketChannel playerChannel;
-    private final Controller contr;
-    
-    private String username = "anonymous";
-    private String guess;
+    private final long connectionId;
+    private volatile long id;
+
+    private volatile String username = "anonymous";
+    private volatile Session session;
+    private Room room;
     private final MessageSplitter msgSplitter = new MessageSplitter();
-    private final ByteBuffer msgFromClient = ByteBuffer.allocateDirect(2018);
-    
-    PlayerHandler(HangmanServer server, SocketChannel playerChannel, Controller contr) {
+    private final ReceiveBuffer msgFromClient = new ReceiveBuffer(RECEIVE_BUDGET);
+    private long receivedAt;
+
+    PlayerHandler(HangmanServer server, SocketChannel playerChannel, long id) {
         this.server = server;
         this.playerChannel = playerChannel;
-        this.contr = contr;
+        this.id = id;
+        this.connectionId = id;
     }
-    
+
+    /**
+     * Decodes received messages, at most <code>FRAME_BUDGET</code> of them. Only connection
+     * handling is done on the calling I/O thread, game requests are passed to the player's room.
+     */
     public void handlePlayerRequest() {
-        while (msgSplitter.hasNext()) {
-            Message msg = new Message(msgSplitter.nextMsg());
-            switch(msg.msgType) {
-                case USER:
-                    username = msg.msgBody;
-                    server.broadcast(msg.msgType + "##" + username);
-                    break;
-
-                case GUESS:
-                    guess = msg.msgBody;
-                    contr.playGame(guess);
-                    boolean right = contr.correctWord();
-                    int remainingGuessses = contr.remainingGuesses();
-
-                    StringJoiner joiner = new StringJoiner("##");
-                    joiner.add(username);
-                    joiner.add(guess);
-                    joiner.add(contr.showCurrentState());
-                    joiner.add(Integer.toString(remainingGuessses));
-
-                    server.broadcast(msg.msgType + "##" + joiner.toString());
-                    if(remainingGuessses == 0) {
-                        joiner.add(Integer.toString(contr.score()));
-                        joiner.add("lose");
-                        joiner.add(contr.getWord());
-                        server.broadcast(MsgType.ENDGAME + "##" + joiner.toString());
-                        server.startGame();
-                        //new Thread (()->{ server.startGame(); }).start();
-                    } else if(right) {
-                        joiner.add(Integer.toString(contr.score()));
-                        joiner.add("win");
-                        server.broadcast(MsgType.ENDGAME + "##" + joiner.toString());
-                        server.startGame();
-                        //new Thread (()->{ server.startGame(); }).start();
-                    }
-                    System.out.println(guess);
-                    break;
-
-                case DISCONNECT:
-                    System.out.println(msg);
-                    try {
-                    disconnectClient();
-                    } catch(IOException ioe) {};
-                    server.broadcast(msg.msgType + "##" + username);
-                    break; 
-
-                default:
-                    System.out.println("Command:" + msg.receivedString + "is not known.");
+        for (int handled = 0; handled < FRAME_BUDGET && msgSplitter.hasNext(); handled++) {
+            CommandEvent command = new CommandEvent();
+            command.begin();
+            String received = msgSplitter.nextMsg();
+            server.recordInbound(connectionId, received, receivedAt);
+            Message msg = new Message(received);
+            traceIfRequested(msg);
+            if (command.shouldCommit()) {
+                command.connectionId = connectionId;
+                command.command = msg.msgType == null ? null : msg.msgType.name();
+                command.commit();
+            }
+            if (msg.msgType == MsgType.HELLO) {
+                greet("deflate".equals(msg.msgBody), msg.arg(2), msg.arg(3), msg.arg(4));
+                continue;
+            }
+            greet(false, null, null, null);
+            if (msg.msgType == MsgType.DISCONNECT) {
+                if (Log.isEnabled(Level.INFO)) {
+                    Log.info("Player {} has disconnected", id);
+                }
+                server.endSession(session);
+                room.request(this, msg);
+                try {
+                    server.disconnect(this);
+                } catch(IOException ioe) {};
+                return;
             }
+            room.request(this, msg);
+        }
+    }
+
+    private void traceIfRequested(Message msg) {
+        TraceFile traceFile = server.traceFile();
+        if (traceFile == null) {
+            return;
+        }
+        String correlationId = msg.correlationId();
+        if (correlationId != null) {
+            msg.trace = new Trace(traceFile, correlationId, receivedAt);
+            msg.trace.decoded();
+        }
+    }
+
+    private void greet(boolean compress, String roomName, String token, String lastSeq) {
+        if (room != null) {
+            return;
+        }
+        long seq = 0;
+        try {
+            seq = lastSeq == null ? 0 : Long.parseLong(lastSeq);
+        } catch (NumberFormatException nfe) {
+            token = null;
+        }
+        room = server.greet(this, compress, roomName, token, seq);
+    }
+
+    /**
+     * Takes over the specified session, including its player id and username. Called on the I/O
+     * thread, before the player has joined a room.
+     */
+    void resume(Session session) {
+        this.session = session;
+        id = session.getPlayerId();
+        username = session.getUsername();
+    }
+
+    /**
+     * Called when the connection is lost, the session may then be resumed by a new connection.
+     */
+    void detach(long now) {
+        if (session != null) {
+            session.detach(this, now);
+        }
+    }
+
+    /**
+     * @return The id this player had when it connected, which does not change if it resumes
+     *         another session.
+     */
+    long getConnectionId() {
+        return connectionId;
+    }
+
+    SocketChannel getChannel() {
+        return playerChannel;
+    }
+
+    @Override
+    public long getId() {
+        return id;
+    }
+
+    @Override
+    public String getUsername() {
+        return username;
+    }
+
+    @Override
+    public void setUsername(String username) {
+        this.username = username;
+        Session current = session;
+        if (current != null) {
+            current.setUsername(username);
         }
     }
 
+    @Override
+    public void reply(String msg) {
+        server.unicast(playerChannel, msg);
+    }
+
     void sendMsg(ByteBuffer msg) throws IOException {
         playerChannel.write(msg);
         if (msg.hasRemaining()) {
             throw new MessageException("Could not send message");
         }
     }
-    
+
     void disconnectClient() throws IOException {
         playerChannel.close();
     }
-    
+
+    /**
+     * @return <code>true</code> if there are received messages that have not yet been handled,
+     *         because the frame budget was used.
+     */
+    boolean hasBacklog() {
+        return msgSplitter.hasNext();
+    }
+
+    /**
+     * Reads what the client has sent, within the read budget, and handles the received messages
+     * within the frame budget. Nothing is read while there is a backlog, the client then has to
+     * wait until the backlog is handled by <code>handlePlayerRequest</code>.
+     */
     void recvMsg() throws IOException {
-        msgFromClient.clear();
-        int numOfReadBytes;
-        numOfReadBytes = playerChannel.read(msgFromClient);
-        if (numOfReadBytes == -1) {
-            throw new IOException("Client has closed connection.");
-        }
-        String recvdString = extractMessageFromBuffer();
-        msgSplitter.appendRecvdString(recvdString);
-        handlePlayerRequest();
-    }
-    
-    private String extractMessageFromBuffer() {
-        msgFromClient.flip();
-        byte[] bytes = new byte[msgFromClient.remaining()];
-        msgFromClient.get(bytes);
-        return new String(bytes);
-    }    
-    
-    private static class Message {
-        private String receivedString;
-        private MsgType msgType;
-        private String msgBody;
-        
-        private Message (String receivedString) {
-            parse(receivedString);
-            this.receivedString = receivedString;
+        if (hasBacklog()) {
+            handlePlayerRequest();
+            return;
         }
-        
-        private void parse (String strToParse) {
-            try {
-                String[] msgTokens = strToParse.split("##");
-                msgType = MsgType.valueOf(msgTokens[0].toUpperCase());
-                if (hasBody(msgTokens)) {
-                    msgBody = msgTokens[1];
-                }
-            } catch (Throwable throwable) {
-                throwable.printStackTrace();
+        receivedAt = System.nanoTime();
+        DecodeEvent decode = new DecodeEvent();
+        decode.begin();
+        String recvdString = msgFromClient.receive(playerChannel);
+        if (!recvdString.isEmpty()) {
+            msgSplitter.appendRecvdString(recvdString);
+            if (decode.shouldCommit()) {
+                decode.connectionId = connectionId;
+                decode.bytes = msgFromClient.lastReceived();
+                decode.frames = msgSplitter.pending();
+                decode.commit();
             }
+            handlePlayerRequest();
         }
-        
-        private boolean hasBody(String[] msgTokens) {
-            return msgTokens.length > 1;
+        if (msgFromClient.isEndOfStream()) {
+            throw new IOException("Client has closed connection.");
         }
     }
 }
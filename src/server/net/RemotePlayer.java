@@ -0,0 +1,44 @@
+package server.net;
+
+import common.MsgType;
+
+/**
+ * A player connected to another cluster node, playing in a room owned by this node.
+ */
+class RemotePlayer implements Player {
+    private final long id;
+    private final String roomName;
+    private final ClusterLink link;
+    private volatile String username = "anonymous";
+
+    /**
+     * @param id       The player's id on the node it is connected to.
+     * @param roomName The room the player is in.
+     * @param link     The link to the node the player is connected to.
+     */
+    RemotePlayer(long id, String roomName, ClusterLink link) {
+        this.id = id;
+        this.roomName = roomName;
+        this.link = link;
+    }
+
+    @Override
+    public long getId() {
+        return id;
+    }
+
+    @Override
+    public String getUsername() {
+        return username;
+    }
+
+    @Override
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    @Override
+    public void reply(String msg) {
+        link.send(MsgType.UNICAST + "##" + roomName + "##" + id + "##" + msg);
+    }
+}
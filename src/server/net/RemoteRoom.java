@@ -0,0 +1,81 @@
+package server.net;
+
+import common.MessageException;
+import common.MsgType;
+import server.log.Log;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A room whose game is played on another cluster node. Requests from players connected to this
+ * server are forwarded to the owning node, and the broadcasts it relays back are sent to those
+ * players. The relayed broadcasts are also kept as a local copy of the history. All methods are
+ * called on the I/O thread.
+ */
+class RemoteRoom extends Room {
+    private final ClusterNode cluster;
+    private final int owner;
+    private final List<String> history = new ArrayList<>();
+    private ClusterLink link;
+
+    /**
+     * Creates the room. Nothing is sent to the owning node until <code>subscribe</code> is called.
+     *
+     * @param owner The id of the node that plays this room's game.
+     */
+    RemoteRoom(HangmanServer server, String name, ClusterNode cluster, int owner) {
+        super(server, name);
+        this.cluster = cluster;
+        this.owner = owner;
+    }
+
+    /**
+     * Subscribes to the room's broadcasts, unless already subscribed. If the owning node can not
+     * be reached, the subscription is tried again the next time the room is entered or a request
+     * is forwarded.
+     */
+    void subscribe() {
+        try {
+            linkToOwner();
+        } catch (MessageException unreachable) {
+            Log.warn("Could not subscribe to room {}", getName(), unreachable);
+        }
+    }
+
+    @Override
+    void request(Player player, Message msg) {
+        linkToOwner().send(MsgType.FORWARD + "##" + getName() + "##" + player.getId() + "##"
+                           + msg.receivedString);
+    }
+
+    @Override
+    String[] history() {
+        return history.toArray(new String[0]);
+    }
+
+    /**
+     * Called when the owning node has relayed a broadcast.
+     */
+    void relayed(String msg) {
+        history.add(msg);
+        server.queueBroadcast(this, recordBroadcast(history.size(), msg, null),
+                              SharedFrame.Kind.of(msg), null);
+    }
+
+    /**
+     * Called when the link to the owning node is closed. A new link is opened by the next request.
+     */
+    void linkLost(ClusterLink lost) {
+        if (link == lost) {
+            link = null;
+        }
+    }
+
+    private ClusterLink linkToOwner() {
+        if (link == null) {
+            link = cluster.linkTo(owner);
+            link.send(MsgType.SUBSCRIBE + "##" + getName() + "##" + history.size());
+        }
+        return link;
+    }
+}
@@ -0,0 +1,65 @@
+package server.net;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The latest broadcasts in a room, already encoded. A client that resumes its session gets the
+ * broadcasts it missed from here, instead of the entire history. All methods are thread safe.
+ */
+class ReplayBuffer {
+    private final ByteBuffer[] msgs;
+    private long latestSeq = 0;
+
+    /**
+     * @param capacity The number of broadcasts that are kept.
+     */
+    ReplayBuffer(int capacity) {
+        msgs = new ByteBuffer[capacity];
+    }
+
+    /**
+     * Adds a broadcast. Broadcasts must be added in sequence number order, without gaps.
+     */
+    synchronized void add(long seq, ByteBuffer msg) {
+        msgs[(int) (seq % msgs.length)] = msg;
+        latestSeq = seq;
+    }
+
+    /**
+     * @return The broadcast with the specified sequence number, shared and not to be modified, or
+     *         <code>null</code> if it has not been added or is no longer kept.
+     */
+    synchronized ByteBuffer frame(long seq) {
+        if (seq > latestSeq || seq < oldestSeq()) {
+            return null;
+        }
+        return msgs[(int) (seq % msgs.length)];
+    }
+
+    /**
+     * @return The sequence number of the oldest broadcast that is kept.
+     */
+    synchronized long oldestSeq() {
+        return Math.max(1, latestSeq - msgs.length + 1);
+    }
+
+    /**
+     * Returns all broadcasts after the specified sequence number.
+     *
+     * @param lastSeq The sequence number of the last broadcast the client received.
+     * @return The missed broadcasts, oldest first, or <code>null</code> if some of them are no
+     *         longer kept.
+     */
+    synchronized List<ByteBuffer> since(long lastSeq) {
+        if (lastSeq > latestSeq || lastSeq + 1 < oldestSeq()) {
+            return null;
+        }
+        List<ByteBuffer> missed = new ArrayList<>();
+        for (long seq = lastSeq + 1; seq <= latestSeq; seq++) {
+            missed.add(msgs[(int) (seq % msgs.length)].duplicate());
+        }
+        return missed;
+    }
+}
@@ -0,0 +1,129 @@
+package server.net;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+
+/**
+ * A game room. Players in the same room play the same game and receive the same broadcasts. A
+ * room is either played on this server, or on another node in the cluster.
+ */
+abstract class Room {
+    static final int REPLAY_CAPACITY = 256;
+    final HangmanServer server;
+    private final String name;
+    private final ReplayBuffer replay = new ReplayBuffer(REPLAY_CAPACITY);
+    /**
+     * The spectators watching this room. Only used on the I/O thread.
+     */
+    final Set<Spectator> spectators = new HashSet<>();
+    private SharedFrame historyFrame;
+    private int historyFrameLength = -1;
+
+    Room(HangmanServer server, String name) {
+        this.server = server;
+        this.name = name;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    /**
+     * Passes a request from a player in this room to the game. Called on the I/O thread.
+     */
+    abstract void request(Player player, Message msg);
+
+    /**
+     * @return All messages broadcasted in this room, oldest first.
+     */
+    abstract String[] history();
+
+    /**
+     * Returns the entire history as one message buffer. The buffer, and its compressed copy, is
+     * reused by all clients joining before anything more is added to the history. Called on the
+     * I/O thread.
+     *
+     * @return The history, or <code>null</code> if nothing has been broadcasted yet.
+     */
+    SharedFrame historyFrame() {
+        String[] history = history();
+        if (history.length == 0) {
+            return null;
+        }
+        if (history.length != historyFrameLength) {
+            Queue<ByteBuffer> msgs = new ArrayDeque<>();
+            for (int i = 0; i < history.length; i++) {
+                msgs.add(HangmanServer.createBroadcastMessage(i + 1, history[i]));
+            }
+            historyFrame = new SharedFrame(HangmanServer.mergeMessages(msgs));
+            historyFrameLength = history.length;
+        }
+        return historyFrame;
+    }
+
+    /**
+     * Encodes a broadcast with its sequence number, and keeps it for clients resuming their
+     * sessions. The sequence number is the broadcast's position in the history, so it is the same
+     * on all cluster nodes.
+     *
+     * @param seq        The sequence number.
+     * @param msg        The message.
+     * @param encodedMsg The bytes of the message, or <code>null</code> to encode it here.
+     * @return The message as created by <code>createBroadcastMessage</code>.
+     */
+    ByteBuffer recordBroadcast(long seq, String msg, byte[] encodedMsg) {
+        ByteBuffer completeMsg = HangmanServer.createBroadcastMessage(seq, msg, encodedMsg);
+        replay.add(seq, completeMsg);
+        return completeMsg;
+    }
+
+    /**
+     * Encodes the latest entries of a history taken over from another server process, so that
+     * clients resuming their sessions get the broadcasts they missed.
+     *
+     * @param history The history, oldest first.
+     */
+    void recordHistory(String[] history) {
+        for (int i = Math.max(0, history.length - REPLAY_CAPACITY); i < history.length; i++) {
+            recordBroadcast(i + 1, history[i], null);
+        }
+    }
+
+    /**
+     * @return The sequence number of the last entry in the buffer returned by the latest call to
+     *         <code>historyFrame</code>, zero if it returned <code>null</code>.
+     */
+    long historyFrameSeq() {
+        return Math.max(0, historyFrameLength);
+    }
+
+    /**
+     * @return The broadcast with the specified sequence number, as created by
+     *         <code>createBroadcastMessage</code> and shared by all its readers, or
+     *         <code>null</code> if it has not been broadcasted yet or is no longer kept.
+     */
+    ByteBuffer broadcastFrame(long seq) {
+        return replay.frame(seq);
+    }
+
+    /**
+     * @return The sequence number of the oldest broadcast returned by
+     *         <code>broadcastFrame</code>.
+     */
+    long oldestBroadcastFrame() {
+        return replay.oldestSeq();
+    }
+
+    /**
+     * @param lastSeq The sequence number of the last broadcast a client received.
+     * @return The broadcasts the client has missed, or <code>null</code> if they are too old to
+     *         be replayed.
+     */
+    List<ByteBuffer> missedSince(long lastSeq) {
+        return replay.since(lastSeq);
+    }
+}
@@ -0,0 +1,54 @@
+package server.net;
+
+import common.MsgType;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import server.controller.Controller;
+import server.model.GameState;
+
+/**
+ * Prepares the next round while the current round is still being played. The word is selected,
+ * the first snapshot is created and the <code>NEWGAME</code> message is encoded in advance, so
+ * that starting a round is only a swap of the game state followed by a broadcast. Only the
+ * sequence number is added when the round starts.
+ */
+class RoundPipeline {
+    private final LocalRoom room;
+    private final Controller contr;
+    private CompletableFuture<PreparedRound> next;
+
+    RoundPipeline(LocalRoom room, Controller contr) {
+        this.room = room;
+        this.contr = contr;
+        next = prepareAsync();
+    }
+
+    /**
+     * Starts the prepared round and begins preparing the one after it. Must be called in the
+     * game's mailbox.
+     */
+    void rollover() {
+        PreparedRound prepared = next.join();
+        contr.startRound(prepared.state);
+        room.broadcast(prepared.msg, prepared.encodedMsg);
+        next = prepareAsync();
+    }
+
+    private CompletableFuture<PreparedRound> prepareAsync() {
+        return CompletableFuture.supplyAsync(() -> new PreparedRound(contr.prepareNextRound()),
+                                             ForkJoinPool.commonPool());
+    }
+
+    private static class PreparedRound {
+        private final GameState state;
+        private final String msg;
+        private final byte[] encodedMsg;
+
+        private PreparedRound(GameState state) {
+            this.state = state;
+            this.msg = MsgType.NEWGAME + "##" + state.showCurrentState() + "##"
+                       + state.remainingGuesses() + "##" + state.round();
+            this.encodedMsg = msg.getBytes();
+        }
+    }
+}
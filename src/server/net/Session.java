@@ -0,0 +1,68 @@
+package server.net;
+
+/**
+ * A player's session, which outlives the player's connection. A client that reconnects presents
+ * the session token and gets back its player id, username and room.
+ */
+class Session {
+    private final String token;
+    private final long playerId;
+    private final String roomName;
+    private volatile String username = "anonymous";
+    private volatile PlayerHandler handler;
+    private volatile long disconnectedAt = 0;
+
+    Session(String token, long playerId, String roomName, PlayerHandler handler) {
+        this.token = token;
+        this.playerId = playerId;
+        this.roomName = roomName;
+        this.handler = handler;
+    }
+
+    String getToken() {
+        return token;
+    }
+
+    long getPlayerId() {
+        return playerId;
+    }
+
+    String getRoomName() {
+        return roomName;
+    }
+
+    String getUsername() {
+        return username;
+    }
+
+    void setUsername(String username) {
+        this.username = username;
+    }
+
+    /**
+     * Called when a connection has taken over this session.
+     */
+    void attach(PlayerHandler handler) {
+        this.handler = handler;
+        disconnectedAt = 0;
+    }
+
+    /**
+     * Called when a connection is lost. Has no effect if another connection has taken over the
+     * session.
+     */
+    void detach(PlayerHandler handler, long now) {
+        if (this.handler == handler) {
+            disconnectedAt = now;
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the session has had no connection for longer than the
+     *         specified time.
+     */
+    boolean hasExpired(long now, long ttlMillis) {
+        long since = disconnectedAt;
+        return since != 0 && now - since > ttlMillis;
+    }
+}
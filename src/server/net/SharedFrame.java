@@ -0,0 +1,99 @@
+package server.net;
+
+import common.FrameCompressor;
+import common.MsgType;
+import java.nio.ByteBuffer;
+
+/**
+ * A message that is sent to one or more clients. Clients that have negotiated compression get a
+ * compressed copy, which is created the first time it is needed and then shared by all those
+ * clients. The kind of the message decides its place in each client's outbound queue.
+ */
+class SharedFrame {
+    /**
+     * The kinds of messages. Control messages, and round messages to a client that is behind, are
+     * sent before state messages queued earlier. Only state messages are ever dropped.
+     */
+    enum Kind {
+        /**
+         * Messages to one client, such as the reply to hello and the history. They never make
+         * other messages stale.
+         */
+        CONTROL,
+        /**
+         * Messages starting or ending a round, which carry the state of the game. When one of
+         * these jumps ahead, the queued state messages are superseded by it. Queued
+         * informational messages jump ahead with it, in order, since the client drops
+         * broadcasts with lower sequence numbers than one it has received.
+         */
+        ROUND,
+        /**
+         * Guesses, which carry the complete masked word. A queued state message may be
+         * superseded by a newer one.
+         */
+        STATE,
+        /**
+         * All other broadcasts, such as joins, departures and deltas, which are never dropped
+         * and are kept in order.
+         */
+        INFO;
+
+        /**
+         * @param msg A broadcast, without envelope.
+         * @return The kind of the broadcast.
+         */
+        static Kind of(String msg) {
+            if (msg.startsWith(MsgType.NEWGAME.name()) || msg.startsWith(MsgType.ENDGAME.name())) {
+                return ROUND;
+            }
+            if (msg.startsWith(MsgType.GUESS.name())) {
+                return STATE;
+            }
+            return INFO;
+        }
+    }
+
+    private final ByteBuffer plain;
+    private final Kind kind;
+    private ByteBuffer compressed;
+
+    SharedFrame(ByteBuffer plain) {
+        this(plain, Kind.CONTROL);
+    }
+
+    SharedFrame(ByteBuffer plain, Kind kind) {
+        this.plain = plain;
+        this.kind = kind;
+    }
+
+    Kind kind() {
+        return kind;
+    }
+
+    /**
+     * @param compress <code>true</code> if the receiving client has negotiated compression.
+     * @return A buffer of its own for the receiving client.
+     */
+    ByteBuffer forClient(boolean compress) {
+        if (!compress) {
+            return plain.duplicate();
+        }
+        return compressed().duplicate();
+    }
+
+    private synchronized ByteBuffer compressed() {
+        if (compressed == null) {
+            compressed = plain;
+            if (plain.remaining() >= FrameCompressor.THRESHOLD) {
+                ByteBuffer original = plain.duplicate();
+                byte[] bytes = new byte[original.remaining()];
+                original.get(bytes);
+                byte[] deflated = FrameCompressor.compress(bytes);
+                if (deflated.length < bytes.length) {
+                    compressed = ByteBuffer.wrap(deflated);
+                }
+            }
+        }
+        return compressed;
+    }
+}
@@ -0,0 +1,81 @@
+package server.net;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * A connection that only watches a room. A spectator has no handler, receive buffer or message
+ * splitter, it is only a position in the room's broadcasts. The broadcasts are written from the
+ * encoded frames the room keeps for resuming sessions, which are shared by all spectators.
+ * Everything is done on the I/O thread.
+ */
+class Spectator {
+    private final SocketChannel channel;
+    private final Room room;
+    private ByteBuffer current;
+    private long nextSeq;
+
+    /**
+     * @param history The room's history, which is written first, or <code>null</code> if there
+     *                is none.
+     * @param nextSeq The sequence number of the first broadcast after the history.
+     */
+    Spectator(SocketChannel channel, Room room, ByteBuffer history, long nextSeq) {
+        this.channel = channel;
+        this.room = room;
+        this.current = history;
+        this.nextSeq = nextSeq;
+    }
+
+    SocketChannel getChannel() {
+        return channel;
+    }
+
+    Room getRoom() {
+        return room;
+    }
+
+    /**
+     * Writes as many of the broadcasts this spectator has not received as the channel accepts,
+     * with one gathering write.
+     *
+     * @param writes Scratch space, shared by all spectators. Its length is the most broadcasts
+     *               written at once.
+     * @return <code>true</code> if the spectator has received all broadcasts.
+     * @throws IOException If the write failed, or if the spectator has fallen so far behind that
+     *                     the broadcasts it has not received are no longer kept.
+     */
+    boolean writeAvailable(ByteBuffer[] writes) throws IOException {
+        if (current == null && nextSeq < room.oldestBroadcastFrame()) {
+            throw new IOException("Spectator has fallen behind");
+        }
+        int count = 0;
+        if (current != null) {
+            writes[count++] = current;
+        }
+        long seq = nextSeq;
+        ByteBuffer frame;
+        while (count < writes.length && (frame = room.broadcastFrame(seq)) != null) {
+            writes[count++] = frame.duplicate();
+            seq++;
+        }
+        if (count == 0) {
+            return true;
+        }
+        channel.write(writes, 0, count);
+        current = null;
+        nextSeq = seq;
+        for (int i = 0; i < count; i++) {
+            if (writes[i].hasRemaining()) {
+                current = writes[i];
+                nextSeq = seq - (count - 1 - i);
+                break;
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            writes[i] = null;
+        }
+        return current == null && room.broadcastFrame(nextSeq) == null;
+    }
+}
@@ -0,0 +1,94 @@
+package server.net;
+
+import common.TraceFile;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timestamps of one traced guess, from the moment it was read until the resulting broadcast has
+ * been written to the last client in the room. The trace is recorded when that write is done,
+ * or when the clients it was not written to have disconnected.
+ *
+ * Each line in the trace file holds the correlation id, the number of clients the broadcast was
+ * written to, and the microseconds from reading the guess until it was decoded, evaluated by the
+ * game, queued for broadcast, and written to the first and the last client.
+ */
+class Trace {
+    static final String HEADER =
+        "correlation_id,recipients,decode_us,eval_us,enqueue_us,first_flush_us,last_flush_us";
+    private final TraceFile file;
+    private final String correlationId;
+    private final long receivedAt;
+    private volatile long decodedAt;
+    private volatile long evaluatedAt;
+    private volatile long enqueuedAt;
+    private long firstFlushAt;
+    private long lastFlushAt;
+    private int recipients;
+    private int unflushed;
+
+    /**
+     * @param receivedAt When the guess was read, from <code>System.nanoTime</code>.
+     */
+    Trace(TraceFile file, String correlationId, long receivedAt) {
+        this.file = file;
+        this.correlationId = correlationId;
+        this.receivedAt = receivedAt;
+    }
+
+    void decoded() {
+        decodedAt = System.nanoTime();
+    }
+
+    void evaluated() {
+        evaluatedAt = System.nanoTime();
+    }
+
+    void enqueued() {
+        enqueuedAt = System.nanoTime();
+    }
+
+    /**
+     * Called on the I/O thread when the broadcast has been queued to all clients in the room.
+     */
+    void fannedOut(int recipients) {
+        this.recipients = recipients;
+        unflushed = recipients;
+        if (recipients == 0) {
+            finish();
+        }
+    }
+
+    /**
+     * Called on the I/O thread each time the broadcast has been written to a client.
+     */
+    void flushed() {
+        long now = System.nanoTime();
+        if (firstFlushAt == 0) {
+            firstFlushAt = now;
+        }
+        lastFlushAt = now;
+        if (--unflushed == 0) {
+            finish();
+        }
+    }
+
+    /**
+     * Called on the I/O thread when a client has disconnected before the broadcast was written to
+     * it. The flush times are those of the clients that got the broadcast.
+     */
+    void abandoned() {
+        if (--unflushed == 0) {
+            finish();
+        }
+    }
+
+    private void finish() {
+        file.record(correlationId + "," + recipients + "," + sinceReceived(decodedAt) + ","
+                    + sinceReceived(evaluatedAt) + "," + sinceReceived(enqueuedAt) + ","
+                    + sinceReceived(firstFlushAt) + "," + sinceReceived(lastFlushAt));
+    }
+
+    private long sinceReceived(long nanos) {
+        return nanos == 0 ? -1 : TimeUnit.NANOSECONDS.toMicros(nanos - receivedAt);
+    }
+}
@@ -0,0 +1,134 @@
+package server.sim;
+
+import java.util.PriorityQueue;
+import java.util.Random;
+import server.model.Dictionary;
+import server.model.Game;
+import server.model.GameState;
+import server.model.Solver;
+
+/**
+ * One game played by simulated players, on a virtual clock. Each player thinks for a random time
+ * before each guess, and the players' turns are taken in the order of their virtual times, so no
+ * time is actually spent waiting. Everything random is drawn from one seeded source, so a game
+ * with the same seed is always played the same way. A game is run by one thread.
+ */
+class SimulatedGame {
+    private static final long MEAN_THINK_MILLIS = 2000;
+    private static final String LETTERS = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+    private final Game game;
+    private final Solver solver;
+    private final Random random;
+    private final double[] skill;
+    private final int rounds;
+    private final PriorityQueue<Turn> turns = new PriorityQueue<>();
+    private final StringBuilder guessed = new StringBuilder();
+    private long now = 0;
+
+    /**
+     * @param players The number of simulated players.
+     * @param rounds  The number of rounds to play.
+     * @param seed    The seed of the word selection and of the players' behaviour.
+     */
+    SimulatedGame(Dictionary dictionary, Solver solver, int players, int rounds, long seed) {
+        this.game = new Game(dictionary, seed);
+        this.solver = solver;
+        this.random = new Random(~seed);
+        this.rounds = rounds;
+        skill = new double[players];
+        for (int player = 0; player < players; player++) {
+            skill[player] = 0.3 + 0.7 * random.nextDouble();
+            turns.add(new Turn(think(), player));
+        }
+    }
+
+    /**
+     * Plays all rounds.
+     *
+     * @return What happened, including the bytes allocated by the calling thread, or -1 if they
+     *         are not counted.
+     */
+    Result run() {
+        long allocatedBefore = Simulation.allocatedByCurrentThread();
+        Result result = new Result();
+        game.startRound(game.prepareNextRound());
+        while (result.rounds < rounds) {
+            Turn turn = turns.poll();
+            now = turn.at;
+            GameState state = game.playGame(nextGuess(turn.player));
+            result.guesses++;
+            if (state.isOver()) {
+                result.rounds++;
+                if (state.correctWord()) {
+                    result.wins++;
+                }
+                result.score = state.score();
+                guessed.setLength(0);
+                game.startRound(game.prepareNextRound());
+            }
+            turns.add(new Turn(now + think(), turn.player));
+        }
+        result.virtualMillis = now;
+        result.allocatedBytes = allocatedBefore < 0
+            ? -1 : Simulation.allocatedByCurrentThread() - allocatedBefore;
+        return result;
+    }
+
+    /**
+     * A skilled player asks the solver, others guess a letter nobody has guessed yet.
+     */
+    private String nextGuess(int player) {
+        String guess;
+        if (random.nextDouble() < skill[player] || guessed.length() == LETTERS.length()) {
+            guess = solver.nextGuess(game.showCurrentState(), guessed.toString());
+        } else {
+            char letter;
+            do {
+                letter = LETTERS.charAt(random.nextInt(LETTERS.length()));
+            } while (guessed.indexOf(String.valueOf(letter)) >= 0);
+            guess = String.valueOf(letter);
+        }
+        if (guess.length() == 1 && guessed.indexOf(guess) < 0) {
+            guessed.append(guess);
+        }
+        return guess;
+    }
+
+    /**
+     * @return A think time, exponentially distributed around the mean.
+     */
+    private long think() {
+        return (long) (-Math.log(1 - random.nextDouble()) * MEAN_THINK_MILLIS);
+    }
+
+    /**
+     * A player's next guess, at a virtual time.
+     */
+    private static class Turn implements Comparable<Turn> {
+        private final long at;
+        private final int player;
+
+        private Turn(long at, int player) {
+            this.at = at;
+            this.player = player;
+        }
+
+        @Override
+        public int compareTo(Turn other) {
+            int byTime = Long.compare(at, other.at);
+            return byTime != 0 ? byTime : Integer.compare(player, other.player);
+        }
+    }
+
+    /**
+     * What happened in one game.
+     */
+    static class Result {
+        long guesses;
+        int rounds;
+        int wins;
+        int score;
+        long virtualMillis;
+        long allocatedBytes;
+    }
+}
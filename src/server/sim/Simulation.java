@@ -0,0 +1,130 @@
+package server.sim;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import server.log.Level;
+import server.log.Log;
+import server.model.Dictionary;
+import server.model.Solver;
+
+/**
+ * Plays many games in this process, without sockets, to measure the game engine alone. Each game
+ * has its own simulated players and its own virtual clock, and the games are played in parallel.
+ * Game number <code>i</code> is seeded with <code>seed + i</code>, so the same arguments always
+ * give the same games, whatever the number of threads. The outcome is summarised by a digest,
+ * which is equal for equal runs.
+ *
+ * Usage: <code>Simulation [-games n] [-players m] [-rounds r] [-seed s] [-threads t]</code>
+ */
+public class Simulation {
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) {
+        int games = 100;
+        int players = 4;
+        int rounds = 100;
+        long seed = 1;
+        int threads = Runtime.getRuntime().availableProcessors();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "-games":
+                        games = Integer.parseInt(args[++i]);
+                        break;
+                    case "-players":
+                        players = Integer.parseInt(args[++i]);
+                        break;
+                    case "-rounds":
+                        rounds = Integer.parseInt(args[++i]);
+                        break;
+                    case "-seed":
+                        seed = Long.parseLong(args[++i]);
+                        break;
+                    case "-threads":
+                        threads = Integer.parseInt(args[++i]);
+                        break;
+                    default:
+                        System.err.println("Unknown option " + args[i]);
+                }
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            System.err.println("Usage: Simulation [-games n] [-players m] [-rounds r] [-seed s] "
+                               + "[-threads t]");
+            return;
+        }
+        if (!Log.isEnabled(Level.DEBUG)) {
+            Log.setLevel(Level.WARN);
+        }
+        try {
+            Dictionary dictionary = Dictionary.load();
+            run(new Solver(dictionary), dictionary, games, players, rounds, seed, threads);
+        } catch (IOException ioe) {
+            System.err.println("Could not load the dictionary: " + ioe.getMessage());
+        } catch (InterruptedException | ExecutionException e) {
+            System.err.println("Simulation failed: " + e);
+        }
+    }
+
+    private static void run(Solver solver, Dictionary dictionary, int games, int players,
+                            int rounds, long seed, int threads)
+        throws InterruptedException, ExecutionException {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        long startedAt = System.nanoTime();
+        List<SimulatedGame.Result> results = pool.submit(
+            () -> IntStream.range(0, games).parallel()
+                           .mapToObj(i -> new SimulatedGame(dictionary, solver, players, rounds,
+                                                            seed + i).run())
+                           .collect(Collectors.toList())).get();
+        double seconds = (System.nanoTime() - startedAt) / 1e9;
+        pool.shutdown();
+        report(results, games, players, threads, seconds);
+    }
+
+    private static void report(List<SimulatedGame.Result> results, int games, int players,
+                               int threads, double seconds) {
+        long guesses = 0;
+        long rounds = 0;
+        long wins = 0;
+        long virtualMillis = 0;
+        long allocatedBytes = 0;
+        long digest = 17;
+        for (SimulatedGame.Result result : results) {
+            guesses += result.guesses;
+            rounds += result.rounds;
+            wins += result.wins;
+            virtualMillis = Math.max(virtualMillis, result.virtualMillis);
+            allocatedBytes = result.allocatedBytes < 0 || allocatedBytes < 0
+                ? -1 : allocatedBytes + result.allocatedBytes;
+            digest = digest * 31 + result.guesses;
+            digest = digest * 31 + result.score;
+            digest = digest * 31 + result.virtualMillis;
+        }
+        System.out.printf("Simulated %d games with %d players each on %d threads in %.3f s%n",
+                          games, players, threads, seconds);
+        System.out.printf("%d guesses, %.0f guesses/s%n", guesses, guesses / seconds);
+        System.out.printf("%d rounds, %.0f rounds/s, %d won%n", rounds, rounds / seconds, wins);
+        if (allocatedBytes >= 0) {
+            System.out.printf("%d bytes allocated per round%n", allocatedBytes / rounds);
+        }
+        System.out.printf("Longest game took %.1f virtual hours%n", virtualMillis / 3_600_000.0);
+        System.out.printf("Digest %016x%n", digest);
+    }
+
+    /**
+     * @return The number of bytes allocated by the calling thread so far, or -1 if this JVM does
+     *         not count allocations.
+     */
+    static long allocatedByCurrentThread() {
+        if (THREADS instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) THREADS)
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+}